@@ -0,0 +1,246 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Pool of reusable bitmaps and decode scratch buffers shared by all compressions of a {@link Compressor}.
+ * <p>
+ * Bitmaps are grouped in size classes keyed by their allocation size. On KitKat and above a request is served
+ * by the smallest pooled bitmap that is large enough and is reconfigured in place; on older releases only a
+ * bitmap with the exact same dimensions and config can be reused. When the pooled bytes exceed the budget the
+ * least recently released bitmaps are recycled.
+ */
+public class BitmapPool {
+    private static final String LOG_TAG = BitmapPool.class.getSimpleName();
+
+    static final int TEMP_STORAGE_SIZE = 16 * 1024;
+    private static final int MAX_TEMP_STORAGE_BUFFERS = 4;
+
+    // a pooled bitmap is not handed out for a request that would use less than 1/MAX_SIZE_MULTIPLE of it
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private final long maxBytes;
+    private long currentBytes;
+
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> sizeClasses = new TreeMap<>();
+    private final LinkedHashSet<Bitmap> lru = new LinkedHashSet<>();
+    private final ArrayDeque<byte[]> tempStorage = new ArrayDeque<>();
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxBytes maximum number of pixel bytes kept in the pool
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a mutable bitmap of the given size and config, reused from the pool when possible. The content of
+     * the returned bitmap is cleared.
+     *
+     * @return a pooled bitmap, or null if none fits
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        bitmap.eraseColor(0);
+        return bitmap;
+    }
+
+    /**
+     * Returns a pooled bitmap of the given size and config, or allocates a new mutable one.
+     */
+    public Bitmap getOrCreate(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = get(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns a bitmap that can be passed to {@link android.graphics.BitmapFactory.Options#inBitmap} for a decode
+     * producing at most {@code width} x {@code height} pixels, or null if none fits. Before KitKat the decoder
+     * only reuses bitmaps of the exact decoded size without sub-sampling, so nothing is returned when
+     * {@code inSampleSize} is larger than 1.
+     */
+    public synchronized Bitmap getForDecode(int width, int height, Bitmap.Config config, int inSampleSize) {
+        if (inSampleSize > 1 && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return null;
+        }
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Hands a bitmap back to the pool. Immutable or recycled bitmaps, and bitmaps larger than the whole budget,
+     * are recycled instead.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (lru.contains(bitmap)) {
+            return;
+        }
+        int size = byteCount(bitmap);
+        if (!bitmap.isMutable() || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        ArrayDeque<Bitmap> bitmaps = sizeClasses.get(size);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            sizeClasses.put(size, bitmaps);
+        }
+        bitmaps.addLast(bitmap);
+        lru.add(bitmap);
+        currentBytes += size;
+
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Returns a scratch buffer for {@link android.graphics.BitmapFactory.Options#inTempStorage}.
+     */
+    public synchronized byte[] acquireTempStorage() {
+        byte[] buffer = tempStorage.pollFirst();
+        return buffer != null ? buffer : new byte[TEMP_STORAGE_SIZE];
+    }
+
+    /**
+     * Hands a scratch buffer obtained from {@link #acquireTempStorage()} back to the pool.
+     */
+    public synchronized void releaseTempStorage(byte[] buffer) {
+        if (buffer != null && buffer.length == TEMP_STORAGE_SIZE && tempStorage.size() < MAX_TEMP_STORAGE_BUFFERS) {
+            tempStorage.addFirst(buffer);
+        }
+    }
+
+    /**
+     * Recycles every pooled bitmap and drops the pooled scratch buffers.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+        tempStorage.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getCurrentSize() {
+        return currentBytes;
+    }
+
+    public long getMaxSize() {
+        return maxBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return LOG_TAG + "[size=" + currentBytes + "/" + maxBytes + ", hits=" + hitCount + ", misses=" + missCount
+                + ", evictions=" + evictionCount + "]";
+    }
+
+    private Bitmap take(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            Map.Entry<Integer, ArrayDeque<Bitmap>> entry = sizeClasses.ceilingEntry(needed);
+            if (entry == null || entry.getKey() > (long) needed * MAX_SIZE_MULTIPLE) {
+                return null;
+            }
+            Bitmap bitmap = entry.getValue().pollLast();
+            remove(entry.getKey(), entry.getValue(), bitmap);
+            bitmap.reconfigure(width, height, config);
+            return bitmap;
+        }
+
+        ArrayDeque<Bitmap> bitmaps = sizeClasses.get(needed);
+        if (bitmaps == null) {
+            return null;
+        }
+        Iterator<Bitmap> iterator = bitmaps.descendingIterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                iterator.remove();
+                remove(needed, bitmaps, bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    // bookkeeping for a bitmap that has already been taken out of its size class
+    private void remove(int size, ArrayDeque<Bitmap> bitmaps, Bitmap bitmap) {
+        if (bitmaps.isEmpty()) {
+            sizeClasses.remove(size);
+        }
+        lru.remove(bitmap);
+        currentBytes -= size;
+    }
+
+    private void trimToSize(long size) {
+        Iterator<Bitmap> iterator = lru.iterator();
+        while (currentBytes > size && iterator.hasNext()) {
+            Bitmap eldest = iterator.next();
+            iterator.remove();
+
+            int eldestSize = byteCount(eldest);
+            ArrayDeque<Bitmap> bitmaps = sizeClasses.get(eldestSize);
+            bitmaps.remove(eldest);
+            if (bitmaps.isEmpty()) {
+                sizeClasses.remove(eldestSize);
+            }
+            currentBytes -= eldestSize;
+            eldest.recycle();
+            evictionCount++;
+        }
+    }
+
+    static int byteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 4;
+    }
+}
@@ -0,0 +1,56 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Sharpness of an image as measured by {@link BlurScorer}, or by the DCT estimate of
+ * {@link Compressor#estimateBlur(String)}. Scores of the two are on different scales.
+ */
+public class BlurScore {
+    private final double score;
+    private final double maxResponse;
+    private final double confidence;
+    private final boolean blurry;
+
+    BlurScore(double score, double maxResponse, double confidence, boolean blurry) {
+        this.score = score;
+        this.maxResponse = maxResponse;
+        this.confidence = confidence;
+        this.blurry = blurry;
+    }
+
+    /**
+     * @return variance of the Laplacian of the grey image at the analysis resolution, or the ratio of high to low
+     * frequency energy for a DCT estimate; higher is sharper
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return strongest edge in the image: the largest absolute Laplacian response, or the largest high frequency
+     * amplitude of a block for a DCT estimate
+     */
+    public double getMaxResponse() {
+        return maxResponse;
+    }
+
+    /**
+     * @return how far the score is from the blur threshold, from 0 when it is on the threshold to 1 when it is
+     * clearly on one side
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return whether the score is below the blur threshold
+     */
+    public boolean isBlurry() {
+        return blurry;
+    }
+
+    @Override
+    public String toString() {
+        return "BlurScore[score=" + score + ", maxResponse=" + maxResponse + ", confidence=" + confidence
+                + (blurry ? ", blurry]" : "]");
+    }
+}
@@ -0,0 +1,99 @@
+package com.bishwajeet.imagecompressor;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Scores the sharpness of an image by the variance of its Laplacian. The image is reduced to a fixed analysis
+ * resolution first, both to bound the cost and because the variance of the Laplacian depends on scale, so one
+ * threshold only means the same thing for images analysed at the same size.
+ */
+public class BlurScorer {
+
+    /**
+     * Default longest side, in pixels, of the image that is analysed.
+     */
+    public static final int DEFAULT_ANALYSIS_SIZE = 1024;
+
+    /**
+     * Default Laplacian variance below which an image is considered blurry.
+     */
+    public static final double DEFAULT_THRESHOLD = 100;
+
+    // a score this many times above or below the threshold is scored with full confidence
+    private static final double CONFIDENCE_RANGE = 4;
+
+    private final int analysisSize;
+    private final double threshold;
+
+    public BlurScorer() {
+        this(DEFAULT_ANALYSIS_SIZE, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param analysisSize longest side, in pixels, that larger images are reduced to before scoring
+     * @param threshold    Laplacian variance below which an image is considered blurry
+     */
+    public BlurScorer(int analysisSize, double threshold) {
+        if (analysisSize <= 0 || threshold <= 0) {
+            throw new IllegalArgumentException("Analysis size and threshold must be positive.");
+        }
+        this.analysisSize = analysisSize;
+        this.threshold = threshold;
+    }
+
+    public int getAnalysisSize() {
+        return analysisSize;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Scores an 8-bit single channel image. The input is not modified.
+     */
+    public BlurScore score(Mat gray) {
+        Mat scaled = gray;
+        int longestSide = Math.max(gray.cols(), gray.rows());
+        if (longestSide > analysisSize) {
+            double scale = analysisSize / (double) longestSide;
+            scaled = new Mat();
+            Imgproc.resize(gray, scaled, new Size(), scale, scale, Imgproc.INTER_AREA);
+        }
+
+//      a signed float Laplacian keeps the negative half of every edge that an 8-bit result would clip
+        Mat laplacian = new Mat();
+        MatOfDouble mean = new MatOfDouble();
+        MatOfDouble stdDev = new MatOfDouble();
+        try {
+            Imgproc.Laplacian(scaled, laplacian, CvType.CV_32F);
+            Core.meanStdDev(laplacian, mean, stdDev);
+            Core.MinMaxLocResult range = Core.minMaxLoc(laplacian);
+
+            double deviation = stdDev.toArray()[0];
+            double variance = deviation * deviation;
+            double maxResponse = Math.max(-range.minVal, range.maxVal);
+            return new BlurScore(variance, maxResponse, confidence(variance, threshold), variance < threshold);
+        } finally {
+            if (scaled != gray) {
+                scaled.release();
+            }
+            laplacian.release();
+            mean.release();
+            stdDev.release();
+        }
+    }
+
+    /**
+     * @return confidence in the verdict on a Laplacian variance, from 0 at the threshold to 1 at a factor of
+     * {@code CONFIDENCE_RANGE} from it
+     */
+    static double confidence(double variance, double threshold) {
+        return variance > 0 ? Math.min(1, Math.abs(Math.log(variance / threshold)) / Math.log(CONFIDENCE_RANGE)) : 1;
+    }
+}
@@ -0,0 +1,126 @@
+package com.bishwajeet.imagecompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Growable in-memory output stream used to hold encoded images. Unlike {@link java.io.ByteArrayOutputStream} it
+ * exposes its backing array and is recycled through a small pool, so repeated encodes neither copy nor reallocate
+ * their output.
+ */
+public class ByteSink extends OutputStream {
+    private static final int INITIAL_CAPACITY = 256 * 1024;
+    // about a default output JPEG; the pool is static and lives as long as the process, so the rare sinks that
+    // grew past this are left to the collector instead of holding their memory
+    static final int MAX_POOLED_CAPACITY = 2 * 1024 * 1024;
+    private static final int MAX_POOL_SIZE = 4;
+
+    private static final ArrayDeque<ByteSink> sPool = new ArrayDeque<>();
+
+    private byte[] mBuffer;
+    private int mCount;
+
+    private ByteSink(int capacity) {
+        mBuffer = new byte[capacity];
+    }
+
+    /**
+     * Returns an empty sink from the pool, or a new one if the pool is empty.
+     */
+    public static ByteSink obtain() {
+        synchronized (sPool) {
+            ByteSink sink = sPool.pollFirst();
+            if (sink != null) {
+                return sink;
+            }
+        }
+        return new ByteSink(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Hands the sink back to the pool, unless its buffer grew past {@link #MAX_POOLED_CAPACITY}. The sink must not
+     * be used afterwards.
+     */
+    public void recycle() {
+        mCount = 0;
+        if (mBuffer.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        synchronized (sPool) {
+            if (sPool.size() < MAX_POOL_SIZE) {
+                sPool.addFirst(this);
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(mCount + 1);
+        mBuffer[mCount++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(mCount + len);
+        System.arraycopy(b, off, mBuffer, mCount, len);
+        mCount += len;
+    }
+
+    /**
+     * Discards the content while keeping the allocated buffer.
+     */
+    public void reset() {
+        mCount = 0;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Returns the backing array. Only the first {@link #size()} bytes are valid.
+     */
+    public byte[] buffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Returns a copy of the content.
+     */
+    public byte[] toByteArray() {
+        byte[] copy = new byte[mCount];
+        System.arraycopy(mBuffer, 0, copy, 0, mCount);
+        return copy;
+    }
+
+    /**
+     * Appends everything remaining in the given stream to this sink. The stream is not closed.
+     */
+    public void readFrom(InputStream in) throws IOException {
+        while (true) {
+            ensureCapacity(mCount + 1);
+            int read = in.read(mBuffer, mCount, mBuffer.length - mCount);
+            if (read == -1) {
+                return;
+            }
+            mCount += read;
+        }
+    }
+
+    /**
+     * Writes the content of this sink to the given stream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(mBuffer, 0, mCount);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mBuffer.length) {
+            byte[] buffer = new byte[Math.max(capacity, mBuffer.length * 2)];
+            System.arraycopy(mBuffer, 0, buffer, 0, mCount);
+            mBuffer = buffer;
+        }
+    }
+}
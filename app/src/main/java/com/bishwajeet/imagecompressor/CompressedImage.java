@@ -0,0 +1,88 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A compressed image held in memory: the encoded bytes and the bitmap decoded from them, which shows exactly what
+ * the encoded file will look like. Nothing is written to disk unless the image is saved.
+ */
+public class CompressedImage {
+    private final byte[] data;
+    private final Bitmap bitmap;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+
+    CompressedImage(byte[] data, Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+        this.data = data;
+        this.bitmap = bitmap;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    /**
+     * @return the encoded image; the array is not copied and must not be modified
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return size of the encoded image in bytes
+     */
+    public int getSize() {
+        return data.length;
+    }
+
+    /**
+     * @return the encoded image decoded back into a bitmap
+     */
+    public Bitmap getBitmap() {
+        return bitmap;
+    }
+
+    public int getWidth() {
+        return bitmap.getWidth();
+    }
+
+    public int getHeight() {
+        return bitmap.getHeight();
+    }
+
+    /**
+     * @return the format the image was encoded in
+     */
+    public Bitmap.CompressFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the quality the image was encoded with
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * Writes the encoded image to the given stream. The stream is not closed.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(data);
+    }
+
+    /**
+     * Writes the encoded image to the given file, replacing it if it exists.
+     */
+    public void writeTo(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.bishwajeet.imagecompressor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs compression jobs on a fixed number of worker threads.
+ * <p>
+ * Queued jobs run in priority order, user-visible work before background work and first come first served within
+ * a priority. Jobs submitted with a key while another job with the same key is queued or running are coalesced
+ * into it, so every submitter gets the result of a single run; the job is only cancelled once every submitter has
+ * cancelled. Cancellation is cooperative: a running job stops at the next {@link #throwIfCancelled()} checkpoint
+ * between its decode, scale and encode stages.
+ * <p>
+ * The class has no Android dependencies.
+ */
+public class CompressionExecutor {
+
+    public enum Priority {
+        /**
+         * Work whose result the user is waiting for.
+         */
+        USER_VISIBLE,
+        /**
+         * Work that may wait, such as batch compressions.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * Receives the outcome of a submission.
+     */
+    public interface Listener<V> {
+        /**
+         * Called once per submission when its result is available or it was cancelled, on the thread that
+         * completed or cancelled it.
+         *
+         * @param future the future returned by the submission, which is done
+         */
+        void onDone(Future<V> future);
+    }
+
+    /**
+     * Work over a range of indices, such as rows, that can be split into independent bands.
+     */
+    interface Band {
+        /**
+         * Processes the indices from {@code from} inclusive to {@code to} exclusive.
+         */
+        void run(int from, int to);
+    }
+
+    private static final ThreadLocal<Task<?>> sCurrentTask = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // guarded by this
+    private final Map<String, Task<?>> keyedTasks = new HashMap<>();
+
+    /**
+     * @param threads          number of worker threads
+     * @param threadNamePrefix prefix of the names of the daemon worker threads
+     */
+    public CompressionExecutor(int threads, final String threadNamePrefix) {
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadNamePrefix + " #" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a job.
+     *
+     * @param key      identifies the work done by the job so that concurrent submissions of the same work are
+     *                 coalesced, or null to never coalesce. All jobs submitted with a given key must compute the
+     *                 same result.
+     * @param priority priority of the job; a coalesced job that is still queued is raised to the highest priority
+     *                 it was submitted with
+     * @param job      the work
+     * @param listener notified when the submission completes or is cancelled, may be null
+     * @return the future of this submission
+     */
+    public <V> Future<V> submit(String key, Priority priority, Callable<V> job, Listener<V> listener) {
+        Task<V> task;
+        Handle<V> handle;
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Task<V> existing = key != null ? (Task<V>) keyedTasks.get(key) : null;
+            if (existing != null && !existing.isCancelled()) {
+                if (priority.ordinal() < existing.priority.ordinal() && executor.remove(existing)) {
+                    existing.priority = priority;
+                    executor.execute(existing);
+                }
+                return existing.subscribe(listener);
+            }
+
+            task = new Task<>(key, priority, job);
+            handle = task.subscribe(listener);
+            if (key != null) {
+                keyedTasks.put(key, task);
+            }
+        }
+        executor.execute(task);
+        return handle;
+    }
+
+    /**
+     * Queues a job that is never coalesced.
+     */
+    public <V> Future<V> submit(Priority priority, Callable<V> job) {
+        return submit(null, priority, job, null);
+    }
+
+    /**
+     * Waits for a future returned by this executor. If its job has not started yet it is run on the calling
+     * thread instead, so a job can wait for jobs it submitted without tying up the workers.
+     */
+    <V> V join(Future<V> future) throws InterruptedException, ExecutionException {
+        if (future instanceof Handle) {
+            Task<V> task = ((Handle<V>) future).task;
+            if (executor.remove(task)) {
+                task.run();
+            }
+        }
+        return future.get();
+    }
+
+    /**
+     * Splits a range into at most {@code maxBands} bands of at least {@code minBandSize} indices, runs them in
+     * parallel at the priority of the calling job and waits for all of them. Runs on the calling thread when the
+     * range is too small to split.
+     */
+    void runBands(int from, int to, int maxBands, int minBandSize, final Band band) {
+        int size = to - from;
+        int bands = Math.min(maxBands, size / Math.max(1, minBandSize));
+        if (bands <= 1) {
+            band.run(from, to);
+            return;
+        }
+
+        Priority priority = currentPriority();
+        List<Future<Void>> futures = new ArrayList<>(bands);
+        for (int i = 0; i < bands; i++) {
+            final int bandFrom = from + (int) ((long) size * i / bands);
+            final int bandTo = from + (int) ((long) size * (i + 1) / bands);
+            futures.add(submit(priority, new Callable<Void>() {
+                @Override
+                public Void call() {
+                    band.run(bandFrom, bandTo);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                join(future);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for bands");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Throws if the job running on the calling thread has been cancelled. Called between the stages of a
+     * compression; does nothing when called outside of a job.
+     *
+     * @throws CancellationException if the current job has been cancelled
+     */
+    static void throwIfCancelled() {
+        Task<?> task = sCurrentTask.get();
+        if (task != null && task.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * @return the priority of the job running on the calling thread, or {@link Priority#USER_VISIBLE} when called
+     * outside of a job since the caller is then waiting for the result
+     */
+    static Priority currentPriority() {
+        Task<?> task = sCurrentTask.get();
+        return task != null ? task.priority : Priority.USER_VISIBLE;
+    }
+
+    /**
+     * @return number of jobs waiting for a worker
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of jobs currently running
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Stops accepting jobs; queued and running jobs still complete.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private final class Task<V> extends FutureTask<V> implements Comparable<Task<?>> {
+        final String key;
+        final long order = sequence.getAndIncrement();
+        volatile Priority priority;
+
+        // guarded by CompressionExecutor.this
+        private final List<Handle<V>> handles = new ArrayList<>(1);
+        private int subscribers;
+
+        Task(String key, Priority priority, Callable<V> job) {
+            super(job);
+            this.key = key;
+            this.priority = priority;
+        }
+
+        Handle<V> subscribe(Listener<V> listener) {
+            Handle<V> handle = new Handle<>(this, listener);
+            handles.add(handle);
+            subscribers++;
+            return handle;
+        }
+
+        // called with the executor locked
+        void unsubscribe() {
+            if (--subscribers == 0) {
+                cancel(false);
+                if (key != null && keyedTasks.get(key) == this) {
+                    keyedTasks.remove(key);
+                }
+                executor.remove(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Task<?> outer = sCurrentTask.get();
+            sCurrentTask.set(this);
+            try {
+                super.run();
+            } finally {
+                sCurrentTask.set(outer);
+            }
+        }
+
+        @Override
+        protected void done() {
+            List<Handle<V>> toNotify;
+            synchronized (CompressionExecutor.this) {
+                if (key != null && keyedTasks.get(key) == this) {
+                    keyedTasks.remove(key);
+                }
+                toNotify = new ArrayList<>(handles);
+            }
+            for (Handle<V> handle : toNotify) {
+                handle.notifyDone();
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int result = priority.compareTo(other.priority);
+            if (result == 0) {
+                result = order < other.order ? -1 : (order == other.order ? 0 : 1);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The future of one submission; cancelling it only cancels the shared task once nobody else waits for it.
+     */
+    private final class Handle<V> implements Future<V> {
+        final Task<V> task;
+        private final Listener<V> listener;
+        private volatile boolean cancelled;
+        private boolean notified;
+
+        Handle(Task<V> task, Listener<V> listener) {
+            this.task = task;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (CompressionExecutor.this) {
+                if (cancelled || task.isDone()) {
+                    return false;
+                }
+                cancelled = true;
+                task.unsubscribe();
+            }
+            notifyDone();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled || task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled || task.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            return task.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                TimeoutException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            return task.get(timeout, unit);
+        }
+
+        void notifyDone() {
+            synchronized (this) {
+                if (notified) {
+                    return;
+                }
+                notified = true;
+            }
+            if (listener != null) {
+                listener.onDone(this);
+            }
+        }
+    }
+}
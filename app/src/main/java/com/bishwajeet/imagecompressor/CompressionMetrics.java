@@ -0,0 +1,191 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Running counters describing the work done by a {@link Compressor}.
+ */
+public class CompressionMetrics {
+    private final AtomicLong sizeSearchCount = new AtomicLong();
+    private final AtomicLong sizeProbeCount = new AtomicLong();
+    private final AtomicLong sizeMissCount = new AtomicLong();
+    private final AtomicLong similaritySearchCount = new AtomicLong();
+    private final AtomicLong similarityProbeCount = new AtomicLong();
+    private final AtomicLongArray formatWins = new AtomicLongArray(Bitmap.CompressFormat.values().length);
+    private final AtomicLong formatBytesSaved = new AtomicLong();
+    private final AtomicLong thumbnailDecodeCount = new AtomicLong();
+    private final AtomicLong sampledDecodeCount = new AtomicLong();
+    private final AtomicLong diskCacheHitCount = new AtomicLong();
+    private final AtomicLong diskCacheMissCount = new AtomicLong();
+    private final AtomicLong previewCount = new AtomicLong();
+    private final AtomicLong previewNanos = new AtomicLong();
+    private final AtomicLong fullResultCount = new AtomicLong();
+    private final AtomicLong fullResultNanos = new AtomicLong();
+
+    void recordSizeSearch(int probes, boolean withinLimit) {
+        sizeSearchCount.incrementAndGet();
+        sizeProbeCount.addAndGet(probes);
+        if (!withinLimit) {
+            sizeMissCount.incrementAndGet();
+        }
+    }
+
+    void recordSimilaritySearch(int probes) {
+        similaritySearchCount.incrementAndGet();
+        similarityProbeCount.addAndGet(probes);
+    }
+
+    void recordFormatRace(Bitmap.CompressFormat winner, long bytesSaved) {
+        formatWins.incrementAndGet(winner.ordinal());
+        formatBytesSaved.addAndGet(bytesSaved);
+    }
+
+    void recordDimensionDecode(boolean fromThumbnail) {
+        if (fromThumbnail) {
+            thumbnailDecodeCount.incrementAndGet();
+        } else {
+            sampledDecodeCount.incrementAndGet();
+        }
+    }
+
+    void recordDiskCacheLookup(boolean hit) {
+        if (hit) {
+            diskCacheHitCount.incrementAndGet();
+        } else {
+            diskCacheMissCount.incrementAndGet();
+        }
+    }
+
+    void recordPreview(long nanos) {
+        previewCount.incrementAndGet();
+        previewNanos.addAndGet(nanos);
+    }
+
+    void recordFullResult(long nanos) {
+        fullResultCount.incrementAndGet();
+        fullResultNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return number of target-size compressions
+     */
+    public long getSizeSearchCount() {
+        return sizeSearchCount.get();
+    }
+
+    /**
+     * @return total number of trial encodes of all target-size compressions
+     */
+    public long getSizeProbeCount() {
+        return sizeProbeCount.get();
+    }
+
+    /**
+     * @return number of target-size compressions that could not get under the limit even at the lowest quality
+     */
+    public long getSizeMissCount() {
+        return sizeMissCount.get();
+    }
+
+    /**
+     * @return number of similarity-guided compressions
+     */
+    public long getSimilaritySearchCount() {
+        return similaritySearchCount.get();
+    }
+
+    /**
+     * @return total number of trial encodes of all similarity-guided compressions
+     */
+    public long getSimilarityProbeCount() {
+        return similarityProbeCount.get();
+    }
+
+    /**
+     * @return number of automatic format selections won by the given format
+     */
+    public long getFormatWinCount(Bitmap.CompressFormat format) {
+        return formatWins.get(format.ordinal());
+    }
+
+    /**
+     * @return estimated total bytes saved by automatic format selection compared to JPEG
+     */
+    public long getFormatBytesSaved() {
+        return formatBytesSaved.get();
+    }
+
+    /**
+     * @return number of target-dimension compressions served from the embedded EXIF thumbnail
+     */
+    public long getThumbnailDecodeCount() {
+        return thumbnailDecodeCount.get();
+    }
+
+    /**
+     * @return number of target-dimension compressions served by a sub-sampled decode of the full image
+     */
+    public long getSampledDecodeCount() {
+        return sampledDecodeCount.get();
+    }
+
+    /**
+     * @return number of compressions answered from the disk cache
+     */
+    public long getDiskCacheHitCount() {
+        return diskCacheHitCount.get();
+    }
+
+    /**
+     * @return number of compressions that were not in the disk cache
+     */
+    public long getDiskCacheMissCount() {
+        return diskCacheMissCount.get();
+    }
+
+    /**
+     * @return number of previews delivered by progressive compressions
+     */
+    public long getPreviewCount() {
+        return previewCount.get();
+    }
+
+    /**
+     * @return mean time from a progressive request to its preview, in milliseconds
+     */
+    public double getAveragePreviewLatencyMillis() {
+        return averageMillis(previewNanos.get(), previewCount.get());
+    }
+
+    /**
+     * @return number of full results delivered by progressive compressions
+     */
+    public long getFullResultCount() {
+        return fullResultCount.get();
+    }
+
+    /**
+     * @return mean time from a progressive request to its full result, in milliseconds
+     */
+    public double getAverageFullResultLatencyMillis() {
+        return averageMillis(fullResultNanos.get(), fullResultCount.get());
+    }
+
+    private static double averageMillis(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1e6 / count;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionMetrics[sizeSearches=" + getSizeSearchCount() + ", sizeProbes=" + getSizeProbeCount()
+                + ", sizeMisses=" + getSizeMissCount() + ", similaritySearches=" + getSimilaritySearchCount()
+                + ", similarityProbes=" + getSimilarityProbeCount() + ", formatBytesSaved=" + getFormatBytesSaved()
+                + ", thumbnailDecodes=" + getThumbnailDecodeCount() + ", sampledDecodes=" + getSampledDecodeCount()
+                + ", diskCacheHits=" + getDiskCacheHitCount() + ", diskCacheMisses=" + getDiskCacheMissCount()
+                + ", previewLatencyMs=" + getAveragePreviewLatencyMillis()
+                + ", fullResultLatencyMs=" + getAverageFullResultLatencyMillis() + "]";
+    }
+}
@@ -0,0 +1,120 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+
+/**
+ * Describes a compressed image written by {@link Compressor}.
+ */
+public class CompressionResult {
+    private final String filePath;
+    private final int width;
+    private final int height;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+    private final long size;
+
+    private int probeCount;
+    private float similarity = Float.NaN;
+    private long bytesSaved;
+    private boolean fromThumbnail;
+
+    CompressionResult(String filePath, int width, int height, Bitmap.CompressFormat format, int quality, long size) {
+        this.filePath = filePath;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.quality = quality;
+        this.size = size;
+    }
+
+    /**
+     * @return path of the compressed image
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the format the image was encoded in
+     */
+    public Bitmap.CompressFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the quality the image was encoded with
+     */
+    public int getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return size of the compressed image in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of trial encodes it took to choose the quality
+     */
+    public int getProbeCount() {
+        return probeCount;
+    }
+
+    /**
+     * @return SSIM of the encoded image against the scaled source, or NaN if it was not measured
+     */
+    public float getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * @return estimated number of bytes saved compared to a JPEG at the default quality
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * @return true if the image was produced from the thumbnail embedded in the source EXIF data
+     */
+    public boolean isFromThumbnail() {
+        return fromThumbnail;
+    }
+
+    CompressionResult setProbeCount(int probeCount) {
+        this.probeCount = probeCount;
+        return this;
+    }
+
+    CompressionResult setSimilarity(float similarity) {
+        this.similarity = similarity;
+        return this;
+    }
+
+    CompressionResult setBytesSaved(long bytesSaved) {
+        this.bytesSaved = bytesSaved;
+        return this;
+    }
+
+    CompressionResult setFromThumbnail(boolean fromThumbnail) {
+        this.fromThumbnail = fromThumbnail;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionResult[" + filePath + ", " + width + "x" + height + ", " + format + " q" + quality + ", "
+                + size + " bytes, " + probeCount + " probes, saved " + bytesSaved + " bytes"
+                + (fromThumbnail ? ", from thumbnail]" : "]");
+    }
+}
@@ -1,19 +1,24 @@
 package com.bishwajeet.imagecompressor;
 
-import android.app.ProgressDialog;
+import android.annotation.TargetApi;
+import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
+import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
 import android.media.ExifInterface;
+import android.media.Image;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Environment;
-import android.provider.MediaStore;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import org.opencv.android.Utils;
@@ -22,11 +27,26 @@ import org.opencv.core.Mat;
 import org.opencv.imgproc.Imgproc;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by bishwajeetkumar on 06/02/17.
@@ -35,11 +55,73 @@ import java.util.Date;
 public class Compressor {
     private static final String LOG_TAG = Compressor.class.getSimpleName();
 
+    private static final int DEFAULT_QUALITY = 80;
+    private static final int MIN_QUALITY = 5;
+    private static final int MAX_QUALITY = 100;
+
+    // a target-size search stops at the first encoding within this fraction below the limit
+    private static final float SIZE_TOLERANCE = 0.05f;
+
+    // longest side of the luma proxies compared by the similarity search
+    private static final int SIMILARITY_PROXY_SIZE = 512;
+
+    // longest side of the sample every candidate format encodes during a format race
+    private static final int FORMAT_SAMPLE_SIZE = 256;
+    private static final String DISK_CACHE_DIRECTORY = "SiliCompressor";
+
+    // largest relative difference between the aspect ratios of an image and its EXIF thumbnail for the thumbnail
+    // to be used in its place
+    private static final float THUMBNAIL_ASPECT_TOLERANCE = 0.02f;
+
+    private static final Bitmap.CompressFormat[] CANDIDATE_FORMATS = {
+            Bitmap.CompressFormat.JPEG, Bitmap.CompressFormat.WEBP, Bitmap.CompressFormat.PNG};
+
     static volatile Compressor singleton = null;
     private static Context mContext;
 
+    private final BitmapPool mBitmapPool;
+    private final TiledDecoder mTiledDecoder;
+    private final long mTiledDecodeThreshold;
+    private final float mSimilarityThreshold;
+    private final UriPathCache mUriPathCache;
+    private final DiskCache mDiskCache;
+    private final CompressionMetrics mMetrics = new CompressionMetrics();
+    private final CompressionExecutor mExecutor =
+            new CompressionExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()), LOG_TAG);
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final MemoryBudget mMemoryBudget;
+    private final Resampler mResampler;
+    // the Builder settings that change the default output, appended to its disk cache keys
+    private final String mOutputSettings;
+    private final BlurScorer mBlurScorer = new BlurScorer();
+    private final SharpnessAnalyzer mSharpnessAnalyzer = new SharpnessAnalyzer(SharpnessAnalyzer.DEFAULT_TILE_SIZE,
+            BlurScorer.DEFAULT_THRESHOLD, mExecutor, Runtime.getRuntime().availableProcessors());
+    private final MetricsEngine mMetricsEngine =
+            MetricsEngine.standard(mExecutor, Runtime.getRuntime().availableProcessors());
+    // guarded by this
+    private QualityIndex mQualityIndex;
+
     public Compressor(Context context) {
+        this(context, new BitmapPool(Builder.defaultBitmapPoolSize()), Builder.DEFAULT_TILED_DECODE_THRESHOLD,
+                Builder.DEFAULT_SIMILARITY_THRESHOLD, Builder.DEFAULT_PATH_CACHE_SIZE,
+                Builder.defaultBatchMemoryBudget(), 0, null);
+    }
+
+    Compressor(Context context, BitmapPool bitmapPool, long tiledDecodeThreshold, float similarityThreshold,
+               int pathCacheSize, long batchMemoryBudget, long diskCacheSize, Resampler.Filter resamplingFilter) {
         mContext = context;
+        mUriPathCache = new UriPathCache(context, pathCacheSize);
+        mBitmapPool = bitmapPool;
+        mTiledDecoder = new TiledDecoder(bitmapPool);
+        mTiledDecodeThreshold = tiledDecodeThreshold;
+        mSimilarityThreshold = similarityThreshold;
+        mMemoryBudget = new MemoryBudget(batchMemoryBudget);
+        mDiskCache = diskCacheSize > 0
+                ? new DiskCache(new File(context.getCacheDir(), DISK_CACHE_DIRECTORY), diskCacheSize) : null;
+        mResampler = resamplingFilter != null ? new Resampler(resamplingFilter, mExecutor,
+                Runtime.getRuntime().availableProcessors()) : null;
+        mOutputSettings = "_" + (resamplingFilter != null ? resamplingFilter.name().toLowerCase(Locale.US) : "canvas")
+                + "_tiled" + tiledDecodeThreshold;
     }
 
     // initialise the class and set the context
@@ -55,6 +137,113 @@ public class Compressor {
 
     }
 
+    /**
+     * Returns the pool that recycles bitmaps and decode buffers across compressions. Its hit, miss and eviction
+     * counters can be used to monitor reuse during batch jobs.
+     *
+     * @return the bitmap pool of this compressor
+     */
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * Returns the running counters of this compressor.
+     *
+     * @return the metrics of this compressor
+     */
+    public CompressionMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Looks up the file paths of the given images in batches ahead of compressing them, so that the individual
+     * compressions do not each query the content resolver.
+     *
+     * @param imageUris Uris (String) of the source images
+     */
+    public void prefetchPaths(Collection<String> imageUris) {
+        mUriPathCache.getAll(imageUris);
+    }
+
+    /**
+     * Compresses the images at the specified Uri Strings in parallel on a bounded pool of worker threads. Before
+     * decoding, every image reserves its estimated pixel memory from a budget shared by all running compressions,
+     * so large images wait for memory instead of being decoded at the same time while small ones keep every
+     * worker busy.
+     *
+     * @param imageUris Uris (String) of the source images you wish to compress
+     * @param callback  notified on the main thread as each image is compressed and once all are done
+     */
+    public void compressAll(final List<String> imageUris, final Callback callback) {
+        final List<String> uris = new ArrayList<>(imageUris);
+        if (uris.isEmpty()) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onComplete();
+                }
+            });
+            return;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(uris.size());
+        mExecutor.submit(CompressionExecutor.Priority.BACKGROUND, new Callable<Void>() {
+            @Override
+            public Void call() {
+//              one batched lookup instead of one query per image
+                mUriPathCache.getAll(uris);
+                for (String imageUri : uris) {
+                    submitCompression(imageUri, CompressionExecutor.Priority.BACKGROUND, callback, remaining);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Compresses the image at the specified Uri String on a worker thread. Concurrent requests for the same image
+     * share a single compression, and user-visible requests run before queued batch work.
+     *
+     * @param imageUri Uri (String) of the source image you wish to compress
+     * @param priority priority of the request
+     * @param callback notified on the main thread with the filepath of the compressed image, may be null
+     * @return a future holding the filepath, or null if the image could not be compressed. Cancelling it stops the
+     * compression between its decode, scale and encode stages unless another request still waits for it.
+     */
+    public Future<String> compressAsync(String imageUri, CompressionExecutor.Priority priority,
+                                        Callback callback) {
+        return submitCompression(imageUri, priority, callback, new AtomicInteger(1));
+    }
+
+    /**
+     * Returns the index of blur scores of the images in the media store, created on first use. The index is
+     * persisted in a database of the application and only rescores images that were added or changed since it was
+     * last updated.
+     */
+    public QualityIndex getQualityIndex() {
+        synchronized (this) {
+            if (mQualityIndex == null) {
+                mQualityIndex = new QualityIndex(mContext, this);
+            }
+            return mQualityIndex;
+        }
+    }
+
+    /**
+     * @return the scorer behind {@link #scoreBlur(String)}
+     */
+    BlurScorer getBlurScorer() {
+        return mBlurScorer;
+    }
+
+    /**
+     * @return the executor running the asynchronous compressions of this instance
+     */
+    public CompressionExecutor getExecutor() {
+        return mExecutor;
+    }
+
     /**
      * Compresses the image at the specified Uri String and and return the filepath of the compressed image.
      *
@@ -76,108 +265,1335 @@ public class Compressor {
         String compressUri = compressImage(imageUri);
 
         if (deleteSourceImage) {
-            File source = new File(getRealPathFromURI(imageUri));
-            if (source.exists()) {
-                boolean isdeleted = source.delete();
-                Log.d(LOG_TAG, (isdeleted) ? "SourceImage File deleted" : "SourceImage File not deleted");
-            }
+            deleteSourceImage(imageUri);
         }
 
         return compressUri;
     }
 
 
+    /**
+     * Compresses the image at the specified Uri String so that it fits in the given dimensions once upright. The
+     * image is never enlarged. When the target is small enough to be covered by the thumbnail embedded in the
+     * EXIF data of a JPEG, the thumbnail is used instead of decoding the full image.
+     *
+     * @param imageUri  Uri (String) of the source image you wish to compress
+     * @param maxWidth  maximum width of the compressed image
+     * @param maxHeight maximum height of the compressed image
+     * @return the compressed image, or null if the source could not be decoded or written
+     */
+    public CompressionResult compress(String imageUri, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("maxWidth and maxHeight must be positive.");
+        }
+
+        ImageSource source = ImageSource.fromFile(getRealPathFromURI(imageUri));
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
+        }
+
+//      the limits apply to the upright image, the decode works on the stored pixels
+        int orientation = header.orientation;
+        int[] targetSize = fit(header.width, header.height, outputWidth(orientation, maxWidth, maxHeight),
+                outputHeight(orientation, maxWidth, maxHeight));
+        int targetWidth = targetSize[0];
+        int targetHeight = targetSize[1];
+
+        Bitmap scaledBitmap = decodeThumbnail(source, header, targetWidth, targetHeight);
+        boolean fromThumbnail = scaledBitmap != null;
+        if (!fromThumbnail) {
+            scaledBitmap = decodeScaledBitmap(source, header, targetWidth, targetHeight);
+        }
+        if (scaledBitmap == null) {
+            return null;
+        }
+        mMetrics.recordDimensionDecode(fromThumbnail);
+
+        ByteSink encoded = ByteSink.obtain();
+        try {
+            scaledBitmap.compress(Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, encoded);
+            String filename = getFilename();
+            if (!writeToFile(encoded, filename)) {
+                return null;
+            }
+            return new CompressionResult(filename, scaledBitmap.getWidth(), scaledBitmap.getHeight(),
+                    Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, encoded.size())
+                    .setFromThumbnail(fromThumbnail);
+        } finally {
+            encoded.recycle();
+            mBitmapPool.put(scaledBitmap);
+        }
+    }
+
+    private Future<String> submitCompression(final String imageUri, CompressionExecutor.Priority priority,
+                                             final Callback callback, final AtomicInteger remaining) {
+        CompressionExecutor.Listener<String> listener = null;
+        if (callback != null) {
+            listener = new CompressionExecutor.Listener<String>() {
+                @Override
+                public void onDone(Future<String> future) {
+                    String filePath = null;
+                    if (!future.isCancelled()) {
+                        try {
+                            filePath = future.get();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } catch (ExecutionException e) {
+                            Log.w(LOG_TAG, "Unable to compress " + imageUri, e.getCause());
+                        }
+                    }
+                    final String compressedPath = filePath;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onCompressed(imageUri, compressedPath);
+                        }
+                    });
+                    if (remaining.decrementAndGet() == 0) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.onComplete();
+                            }
+                        });
+                    }
+                }
+            };
+        }
+        return mExecutor.submit(imageUri, priority, new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                return compressAdmitted(imageUri);
+            }
+        }, listener);
+    }
+
+    /**
+     * Compresses the image once its estimated pixel memory fits in the shared budget.
+     */
+    private String compressAdmitted(String imageUri) throws InterruptedException {
+        ImageSource source = ImageSource.fromFile(getRealPathFromURI(imageUri));
+        String cacheKey = cacheKey(source);
+        String cached = getCached(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
+        }
+        int reservation = mMemoryBudget.acquire(estimateDecodeBytes(header));
+        try {
+            CompressionExecutor.throwIfCancelled();
+            return compressImage(source, header, cacheKey);
+        } finally {
+            mMemoryBudget.release(reservation);
+        }
+    }
+
+    /**
+     * Compresses the image at the specified Uri String into several sizes, e.g. for a responsive image set. The
+     * image is decoded and its EXIF data read once, at the largest size; every smaller variant is then scaled
+     * down from the next larger one, halving at most per step to keep the filtering sharp, and the variants are
+     * encoded in parallel while the next one is being scaled.
+     *
+     * @param imageUri Uri (String) of the source image you wish to compress
+     * @param sizes    boxes the upright variants must fit in; an image is never enlarged
+     * @return one compressed image per size, in the same order, with null for variants that could not be written.
+     * Every entry is null if the source could not be decoded.
+     */
+    public List<CompressionResult> compressVariants(String imageUri, List<ImageSize> sizes) {
+        int count = sizes.size();
+        List<CompressionResult> results = new ArrayList<>(Collections.<CompressionResult>nCopies(count, null));
+        if (count == 0) {
+            return results;
+        }
+        ImageSource source = ImageSource.fromFile(getRealPathFromURI(imageUri));
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return results;
+        }
+
+        int orientation = header.orientation;
+        int uprightWidth = outputWidth(orientation, header.width, header.height);
+        int uprightHeight = outputHeight(orientation, header.width, header.height);
+        final int[][] variantSizes = new int[count][];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            ImageSize size = sizes.get(i);
+            variantSizes[i] = fit(uprightWidth, uprightHeight, size.getWidth(), size.getHeight());
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long areaA = (long) variantSizes[a][0] * variantSizes[a][1];
+                long areaB = (long) variantSizes[b][0] * variantSizes[b][1];
+                return areaA > areaB ? -1 : (areaA == areaB ? 0 : 1);
+            }
+        });
+
+        int[] largest = variantSizes[order[0]];
+        Bitmap decoded = decodeScaledBitmap(source, header, outputWidth(orientation, largest[0], largest[1]),
+                outputHeight(orientation, largest[0], largest[1]));
+        if (decoded == null) {
+            return results;
+        }
+
+        Bitmap[] bitmaps = new Bitmap[count];
+        ByteSink[] sinks = new ByteSink[count];
+        List<Future<Integer>> futures = new ArrayList<>(Collections.<Future<Integer>>nCopies(count, null));
+        try {
+            Bitmap previous = decoded;
+            for (int k = 0; k < count; k++) {
+                int i = order[k];
+                final Bitmap bitmap = k == 0 ? decoded : downscale(previous, variantSizes[i][0], variantSizes[i][1]);
+                final ByteSink sink = ByteSink.obtain();
+                bitmaps[i] = bitmap;
+                sinks[i] = sink;
+                futures.set(i, mExecutor.submit(CompressionExecutor.currentPriority(), new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        bitmap.compress(Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, sink);
+                        return sink.size();
+                    }
+                }));
+                previous = bitmap;
+            }
+
+            for (int i = 0; i < count; i++) {
+                try {
+                    mExecutor.join(futures.get(i));
+                } catch (ExecutionException e) {
+                    Log.w(LOG_TAG, "Unable to encode variant " + sizes.get(i), e.getCause());
+                    continue;
+                }
+                String filename = getFilename(Bitmap.CompressFormat.JPEG,
+                        "_" + bitmaps[i].getWidth() + "x" + bitmaps[i].getHeight());
+                if (writeToFile(sinks[i], filename)) {
+                    results.set(i, new CompressionResult(filename, bitmaps[i].getWidth(), bitmaps[i].getHeight(),
+                            Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, sinks[i].size()));
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return results;
+        } finally {
+//          whatever ended the loop, encodes still running read the bitmaps and write the sinks recycled below
+            for (Future<Integer> future : futures) {
+                if (future != null) {
+                    awaitQuietly(future);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if (sinks[i] != null) {
+                    sinks[i].recycle();
+                }
+                mBitmapPool.put(bitmaps[i]);
+            }
+            if (bitmaps[order[0]] == null) {
+                mBitmapPool.put(decoded);
+            }
+        }
+    }
+
+    /**
+     * Waits for a job submitted to the executor and ignores its outcome, keeping an interrupt for the caller.
+     */
+    private void awaitQuietly(Future<?> future) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                mExecutor.join(future);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | CancellationException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compresses the drawable with the specified resource id and return the filepath of the compressed image.
+     *
+     * @param drawableID resource id of the source image
+     * @return filepath, or null if the resource could not be decoded
+     * @throws IOException
+     */
     public String compress(int drawableID) throws IOException {
+        String filename = getFilename();
+        FileOutputStream out = new FileOutputStream(filename);
+        CompressionResult result = null;
+        try {
+            result = compress(drawableID, out);
+        } finally {
+            out.close();
+            if (result == null) {
+                new File(filename).delete();
+            }
+        }
+        return result != null ? filename : null;
+    }
+
+    /**
+     * Compresses the drawable with the specified resource id straight into the given stream, which is not closed.
+     *
+     * @param drawableID resource id of the source image
+     * @param out        destination of the compressed JPEG
+     * @return the compressed image without a file path, or null if the resource could not be decoded
+     * @throws IOException
+     */
+    public CompressionResult compress(int drawableID, OutputStream out) throws IOException {
+        InputStream in = mContext.getResources().openRawResource(drawableID);
+        try {
+            return compress(in, out);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Compresses the image read from {@code in} straight into {@code out} without any temporary file. The encoded
+     * source is buffered in memory so that it can be decoded twice; neither stream is closed.
+     *
+     * @param in  encoded source image
+     * @param out destination of the compressed JPEG
+     * @return the compressed image without a file path, or null if the source could not be decoded
+     * @throws IOException
+     */
+    public CompressionResult compress(InputStream in, OutputStream out) throws IOException {
+        ByteSink source = ByteSink.obtain();
+        try {
+            source.readFrom(in);
+            return compress(ImageSource.fromBytes(source.buffer(), 0, source.size()), out);
+        } finally {
+            source.recycle();
+        }
+    }
+
+    /**
+     * Compresses the image read from {@code in} straight into {@code out} at the channel's current position.
+     * Neither the stream nor the channel is closed.
+     *
+     * @param in  encoded source image
+     * @param out destination of the compressed JPEG
+     * @return the compressed image without a file path, or null if the source could not be decoded
+     * @throws IOException
+     */
+    public CompressionResult compress(InputStream in, FileChannel out) throws IOException {
+        return compress(in, Channels.newOutputStream(out));
+    }
+
+    /**
+     * Compresses the image behind the file descriptor straight into {@code out}. The descriptor is read from its
+     * current position and is not closed, and neither is the stream.
+     *
+     * @param fd  descriptor of the encoded source image
+     * @param out destination of the compressed JPEG
+     * @return the compressed image without a file path, or null if the source could not be decoded
+     * @throws IOException
+     */
+    public CompressionResult compress(FileDescriptor fd, OutputStream out) throws IOException {
+        return compress(ImageSource.fromFileDescriptor(fd), out);
+    }
+
+    /**
+     * Compresses the image behind the file descriptor straight into {@code out} at the channel's current position.
+     * Neither the descriptor nor the channel is closed.
+     *
+     * @param fd  descriptor of the encoded source image
+     * @param out destination of the compressed JPEG
+     * @return the compressed image without a file path, or null if the source could not be decoded
+     * @throws IOException
+     */
+    public CompressionResult compress(FileDescriptor fd, FileChannel out) throws IOException {
+        return compress(fd, Channels.newOutputStream(out));
+    }
+
+    /**
+     * Compresses the image at the specified Uri String straight into {@code out}. Content URIs are opened through
+     * the content resolver instead of being resolved to a file path. The stream is not closed.
+     *
+     * @param imageUri Uri (String) of the source image you wish to compress
+     * @param out      destination of the compressed JPEG
+     * @return the compressed image without a file path, or null if the source could not be decoded
+     * @throws IOException
+     */
+    public CompressionResult compress(String imageUri, OutputStream out) throws IOException {
+        Uri uri = Uri.parse(imageUri);
+        if (!ContentResolver.SCHEME_CONTENT.equals(uri.getScheme())) {
+            return compress(ImageSource.fromFile(getRealPathFromURI(imageUri)), out);
+        }
+
+        ParcelFileDescriptor pfd = mContext.getContentResolver().openFileDescriptor(uri, "r");
+        if (pfd == null) {
+            return null;
+        }
+        try {
+            return compress(pfd.getFileDescriptor(), out);
+        } finally {
+            pfd.close();
+        }
+    }
+
+    /**
+     * Compresses a camera frame in NV21, the format of {@code Camera.PreviewCallback} frames, and returns the
+     * filepath of the compressed JPEG. The frame is scaled and rotated in YUV and encoded as is, without an RGB
+     * bitmap or an intermediate JPEG.
+     *
+     * @param nv21            the frame
+     * @param width           width of the frame
+     * @param height          height of the frame
+     * @param rotationDegrees clockwise rotation that turns the frame upright, a multiple of 90
+     * @return filepath, or null if the file could not be written
+     */
+    public String compressYuv(byte[] nv21, int width, int height, int rotationDegrees) {
+        if (nv21.length < width * height * 3 / 2) {
+            throw new IllegalArgumentException("NV21 buffer is smaller than a " + width + "x" + height + " frame.");
+        }
+        return compressYuv(YuvScaler.nv21Planes(nv21, width, height), width, height, rotationDegrees);
+    }
+
+    /**
+     * Compresses a camera frame in {@link ImageFormat#YUV_420_888}, as delivered by an {@code ImageReader}, and
+     * returns the filepath of the compressed JPEG. The image is not closed.
+     *
+     * @param image           the frame
+     * @param rotationDegrees clockwise rotation that turns the frame upright, a multiple of 90
+     * @return filepath, or null if the file could not be written
+     * @see #compressYuv(byte[], int, int, int)
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public String compressYuv(Image image, int rotationDegrees) {
+        if (image.getFormat() != ImageFormat.YUV_420_888) {
+            throw new IllegalArgumentException("Unsupported image format " + image.getFormat());
+        }
+        Image.Plane[] planes = image.getPlanes();
+        YuvScaler.Plane[] yuv = new YuvScaler.Plane[3];
+        for (int i = 0; i < 3; i++) {
+            yuv[i] = new YuvScaler.Plane(planes[i].getBuffer(), 0, planes[i].getRowStride(),
+                    planes[i].getPixelStride());
+        }
+        return compressYuv(yuv, image.getWidth(), image.getHeight(), rotationDegrees);
+    }
+
+    private String compressYuv(YuvScaler.Plane[] planes, int width, int height, int rotationDegrees) {
+        int rotation = (rotationDegrees % 360 + 360) % 360;
+        if (rotation % 90 != 0) {
+            throw new IllegalArgumentException("Rotation must be a multiple of 90 degrees, got " + rotationDegrees);
+        }
+
+//      fit the upright frame in the same box as decoded images, then go back to the orientation of the frame
+        boolean swap = rotation == 90 || rotation == 270;
+        int uprightWidth = swap ? height : width;
+        int uprightHeight = swap ? width : height;
+        int[] targetSize = uprightHeight > uprightWidth
+                ? fit(uprightWidth, uprightHeight, 1287, 1795) : fit(uprightWidth, uprightHeight, 1795, 1287);
+        int targetWidth = Math.max(2, (swap ? targetSize[1] : targetSize[0]) & ~1);
+        int targetHeight = Math.max(2, (swap ? targetSize[0] : targetSize[1]) & ~1);
+
+        byte[] nv21 = YuvScaler.toNv21(planes, width, height, targetWidth, targetHeight, rotation);
+        int outputWidth = swap ? targetHeight : targetWidth;
+        int outputHeight = swap ? targetWidth : targetHeight;
+
+        ByteSink encoded = ByteSink.obtain();
+        try {
+            YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, outputWidth, outputHeight, null);
+            if (!yuvImage.compressToJpeg(new Rect(0, 0, outputWidth, outputHeight), DEFAULT_QUALITY, encoded)) {
+                return null;
+            }
+            String filename = getFilename();
+            return writeToFile(encoded, filename) ? filename : null;
+        } finally {
+            encoded.recycle();
+        }
+    }
+
+
+    /**
+     * Compresses the image at the specified Uri String and and return the bitmap data of the compressed image.
+     *
+     * @param imageUri imageUri Uri (String) of the source image you wish to compress
+     * @return Bitmap format of the new image file (compressed)
+     * @throws IOException if the image could not be compressed
+     */
+    public Bitmap getCompressBitmap(String imageUri) throws IOException {
+        return getCompressBitmap(imageUri, false);
+    }
+
+    /**
+     * Compresses the image at the specified Uri String and and return the bitmap data of the compressed image.
+     *
+     * @param imageUri          Uri (String) of the source image you wish to compress
+     * @param deleteSourceImage If True will delete the source file
+     * @return Compress image bitmap
+     * @throws IOException if the image could not be compressed
+     */
+    public Bitmap getCompressBitmap(String imageUri, boolean deleteSourceImage) throws IOException {
+        CompressedImage image = compressToMemory(imageUri);
+        if (image == null) {
+            throw new IOException("Unable to compress " + imageUri);
+        }
+
+        if (deleteSourceImage) {
+            deleteSourceImage(imageUri);
+        }
+        return image.getBitmap();
+    }
+
+    /**
+     * Compresses the image at the specified Uri String without writing it to disk. The encoded bytes are decoded
+     * once into the pixels of the scaled bitmap they were encoded from, so no new bitmap is allocated for the
+     * result. Use {@link #saveAsync} to write the image to a file afterwards.
+     *
+     * @param imageUri Uri (String) of the source image you wish to compress
+     * @return the compressed image, or null if the source could not be decoded
+     */
+    public CompressedImage compressToMemory(String imageUri) {
+        Bitmap scaledBitmap = decodeScaledBitmap(imageUri);
+        if (scaledBitmap == null) {
+            return null;
+        }
+        return encodeToMemory(scaledBitmap);
+    }
 
-        // Create a bitmap from this drawable
-        Bitmap bitmap = BitmapFactory.decodeResource(mContext.getApplicationContext().getResources(), drawableID);
-        if (null != bitmap) {
-            // Create a file from the bitmap
+    /**
+     * Compresses the image at the specified Uri String in two phases on a worker thread, ahead of background work.
+     * A small preview, taken from the EXIF thumbnail or decoded with a large inSampleSize, is delivered first so
+     * that something can be shown within tens of milliseconds; the full compressed image follows. Both phases
+     * read the image through one open file and one header read.
+     *
+     * @param imageUri    Uri (String) of the source image you wish to compress
+     * @param previewSize longest side of the preview, in pixels
+     * @param callback    notified on the main thread with the preview and then with the compressed image
+     * @return a future holding the compressed image, or null if the image could not be compressed. Cancelling it
+     * after the preview was delivered skips the full compression.
+     */
+    public Future<CompressedImage> compressProgressive(final String imageUri, final int previewSize,
+                                                      final ProgressiveCallback callback) {
+        if (previewSize <= 0) {
+            throw new IllegalArgumentException("previewSize must be positive.");
+        }
+        final long start = System.nanoTime();
+        return mExecutor.submit(null, CompressionExecutor.Priority.USER_VISIBLE, new Callable<CompressedImage>() {
+            @Override
+            public CompressedImage call() throws IOException {
+                CompressedImage image = null;
+                try {
+                    image = compressProgressive(imageUri, previewSize, callback, start);
+                    return image;
+                } finally {
+                    final CompressedImage result = image;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onCompressed(result);
+                        }
+                    });
+                }
+            }
+        }, null);
+    }
+
+    private CompressedImage compressProgressive(String imageUri, int previewSize, final ProgressiveCallback callback,
+                                                long start) throws IOException {
+        FileInputStream in = new FileInputStream(getRealPathFromURI(imageUri));
+        try {
+            ImageSource source = ImageSource.fromFileDescriptor(in.getFD());
+            ImageHeader header = readHeader(source);
+            if (header == null) {
+                return null;
+            }
+
+            final Bitmap preview = decodePreview(source, header, previewSize);
+            if (preview != null) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onPreview(preview);
+                    }
+                });
+                mMetrics.recordPreview(System.nanoTime() - start);
+            }
+
+            CompressionExecutor.throwIfCancelled();
+            Bitmap scaledBitmap = decodeScaledBitmap(source, header);
+            if (scaledBitmap == null) {
+                return null;
+            }
+            CompressedImage image = encodeToMemory(scaledBitmap);
+            if (image != null) {
+                mMetrics.recordFullResult(System.nanoTime() - start);
+            }
+            return image;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Grades and compresses the image at the specified Uri String in one job. The Uri is resolved once, the header
+     * is read once and the image is decoded once: the blur score, and the sharpness map if requested, are computed
+     * on a luma plane reduced from the decoded bitmap that is then encoded.
+     *
+     * @param imageUri Uri (String) of the source image
+     * @param options  what to produce besides the compressed image and its blur score
+     * @return the result, or null if the image could not be decoded
+     * @throws IOException if the image could not be read
+     */
+    public ProcessResult process(String imageUri, ProcessOptions options) throws IOException {
+        return process(imageUri, options, null, System.nanoTime());
+    }
+
+    /**
+     * Runs {@link #process(String, ProcessOptions)} on a worker thread, ahead of background work, delivering a
+     * preview first when {@link ProcessOptions#previewSize(int)} is set.
+     *
+     * @param callback notified on the main thread with the preview and then with the result
+     * @return a future holding the result
+     */
+    public Future<ProcessResult> processAsync(final String imageUri, final ProcessOptions options,
+                                              final ProcessCallback callback) {
+        final long start = System.nanoTime();
+        return mExecutor.submit(null, CompressionExecutor.Priority.USER_VISIBLE, new Callable<ProcessResult>() {
+            @Override
+            public ProcessResult call() throws IOException {
+                ProcessResult result = null;
+                try {
+                    result = process(imageUri, options, callback, start);
+                    return result;
+                } finally {
+                    final ProcessResult processed = result;
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onProcessed(processed);
+                        }
+                    });
+                }
+            }
+        }, null);
+    }
+
+    private ProcessResult process(String imageUri, ProcessOptions options, final ProcessCallback callback,
+                                  long start) throws IOException {
+        ProcessStats stats = new ProcessStats();
+        FileInputStream in = new FileInputStream(getRealPathFromURI(imageUri));
+        try {
+            ImageSource source = ImageSource.fromFileDescriptor(in.getFD());
+            ImageHeader header = readHeader(source);
+            stats.headerReads++;
+            if (header == null) {
+                return null;
+            }
+
+            if (callback != null && options.getPreviewSize() > 0) {
+                final Bitmap preview = decodePreview(source, header, options.getPreviewSize());
+                stats.previewDecodes++;
+                if (preview != null) {
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onPreview(preview);
+                        }
+                    });
+                    mMetrics.recordPreview(System.nanoTime() - start);
+                }
+                CompressionExecutor.throwIfCancelled();
+            }
+
+            long time = System.nanoTime();
+            int[] targetSize = defaultTargetSize(header);
+            Bitmap scaledBitmap = decodeScaledBitmap(source, header, targetSize[0], targetSize[1]);
+            stats.sourceDecodes++;
+            stats.decodeNanos = System.nanoTime() - time;
+            if (scaledBitmap == null) {
+                return null;
+            }
+            stats.decodedBytes = scaledBitmap.getByteCount();
+
+            BlurScore blurScore;
+            SharpnessMap sharpnessMap = null;
+            MetricsReport metrics = null;
+            time = System.nanoTime();
+            try {
+                LumaPlane plane = new LumaPlane();
+                int[] planeSize = fit(scaledBitmap.getWidth(), scaledBitmap.getHeight(),
+                        BlurScorer.DEFAULT_ANALYSIS_SIZE, BlurScorer.DEFAULT_ANALYSIS_SIZE);
+                plane.set(scaledBitmap, planeSize[0], planeSize[1]);
+                blurScore = scoreBlur(plane);
+                if (options.isSharpnessMap()) {
+                    sharpnessMap = mSharpnessAnalyzer.analyze(plane);
+                }
+                if (options.isMetrics()) {
+                    metrics = mMetricsEngine.measure(plane);
+                }
+                CompressionExecutor.throwIfCancelled();
+            } catch (RuntimeException | Error e) {
+                mBitmapPool.put(scaledBitmap);
+                throw e;
+            }
+            stats.analysisNanos = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            CompressedImage image = encodeToMemory(scaledBitmap);
+            stats.encodeNanos = System.nanoTime() - time;
+            if (image == null) {
+                return null;
+            }
+            stats.encodedBytes = image.getSize();
+            mMetrics.recordFullResult(System.nanoTime() - start);
+
+            String filePath = null;
+            if (options.isSave()) {
+                filePath = getFilename();
+                try {
+                    image.writeTo(new File(filePath));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    new File(filePath).delete();
+                    filePath = null;
+                }
+            }
+            return new ProcessResult(image, filePath, blurScore, sharpnessMap, metrics, stats);
+        } finally {
+            in.close();
+        }
+    }
+
+    private BlurScore scoreBlur(LumaPlane plane) {
+        Mat gray = new Mat(plane.getHeight(), plane.getWidth(), CvType.CV_8UC1);
+        try {
+            gray.put(0, 0, plane.getData());
+            return mBlurScorer.score(gray);
+        } finally {
+            gray.release();
+        }
+    }
+
+    /**
+     * Decodes an upright preview whose longest side is about {@code previewSize}, from the EXIF thumbnail when it
+     * is large enough.
+     *
+     * @return a bitmap owned by the caller, or null if decoding failed
+     */
+    private Bitmap decodePreview(ImageSource source, ImageHeader header, int previewSize) {
+        int[] targetSize = fit(header.width, header.height, previewSize, previewSize);
+        int targetWidth = targetSize[0];
+        int targetHeight = targetSize[1];
+
+        Bitmap preview = decodeThumbnail(source, header, targetWidth, targetHeight);
+        if (preview == null) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.outWidth = header.width;
+            options.outHeight = header.height;
+            preview = decodeScaled(source, options, targetWidth, targetHeight, header.orientation);
+        }
+        return preview;
+    }
+
+    /**
+     * Encodes the scaled bitmap as a JPEG at the default quality and decodes the result back into it.
+     *
+     * @param scaledBitmap pooled bitmap, which becomes the bitmap of the returned image
+     * @return the compressed image, or null if the encoded bytes could not be decoded
+     */
+    private CompressedImage encodeToMemory(Bitmap scaledBitmap) {
+        ByteSink encoded = ByteSink.obtain();
+        byte[] data;
+        try {
+            scaledBitmap.compress(Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, encoded);
+            data = encoded.toByteArray();
+        } finally {
+            encoded.recycle();
+        }
+
+//      decode into the scaled bitmap, which has exactly the decoded size, instead of allocating another one
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        options.inBitmap = scaledBitmap;
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            mBitmapPool.put(scaledBitmap);
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (bitmap == null) {
+            mBitmapPool.put(scaledBitmap);
+            return null;
+        }
+        return new CompressedImage(data, bitmap, Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY);
+    }
+
+    /**
+     * Writes a compressed image to a new file under the output directory on a background worker thread.
+     *
+     * @param image    the image to write
+     * @param listener notified on the worker thread once the file is written, may be null
+     * @return a future holding the filepath, or null if the file could not be written
+     */
+    public Future<String> saveAsync(final CompressedImage image, CompressionExecutor.Listener<String> listener) {
+        return mExecutor.submit(null, CompressionExecutor.Priority.BACKGROUND, new Callable<String>() {
+            @Override
+            public String call() {
+                String filename = getFilename(image.getFormat());
+                try {
+                    image.writeTo(new File(filename));
+                    return filename;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    new File(filename).delete();
+                    return null;
+                }
+            }
+        }, listener);
+    }
+
+    /**
+     * Compresses the image at the specified Uri String into a JPEG no larger than {@code maxBytes}, using the
+     * highest quality that fits. The quality is found by a binary search of trial encodes held in memory; only
+     * the chosen encoding is written to disk. If even the lowest quality does not fit, that encoding is kept.
+     *
+     * @param imageUri Uri (String) of the source image you wish to compress
+     * @param maxBytes maximum size of the compressed file in bytes
+     * @return the compressed image, or null if the source could not be decoded or written
+     */
+    public CompressionResult compressToSize(String imageUri, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive.");
+        }
+
+        Bitmap scaledBitmap = decodeScaledBitmap(imageUri);
+        if (scaledBitmap == null) {
+            return null;
+        }
+
+        ByteSink probe = ByteSink.obtain();
+        ByteSink best = ByteSink.obtain();
+        try {
+            long lowerBound = (long) (maxBytes * (1 - SIZE_TOLERANCE));
+            int low = MIN_QUALITY;
+            int high = MAX_QUALITY;
+            int bestQuality = -1;
+            int probes = 0;
+
+//          every probe reuses the same scaled bitmap; the best fitting encoding so far is kept in its own sink
+            while (low <= high) {
+                int quality = (low + high) >>> 1;
+                probe.reset();
+                scaledBitmap.compress(Bitmap.CompressFormat.JPEG, quality, probe);
+                probes++;
+
+                if (probe.size() <= maxBytes) {
+                    bestQuality = quality;
+                    ByteSink swap = best;
+                    best = probe;
+                    probe = swap;
+                    if (best.size() >= lowerBound) {
+                        break;
+                    }
+                    low = quality + 1;
+                } else {
+                    high = quality - 1;
+                }
+            }
+
+            boolean withinLimit = bestQuality != -1;
+            if (!withinLimit) {
+                Log.w(LOG_TAG, "Unable to compress " + imageUri + " below " + maxBytes + " bytes");
+                bestQuality = MIN_QUALITY;
+                best.reset();
+                scaledBitmap.compress(Bitmap.CompressFormat.JPEG, bestQuality, best);
+            }
+            mMetrics.recordSizeSearch(probes, withinLimit);
+
+            String filename = getFilename();
+            if (!writeToFile(best, filename)) {
+                return null;
+            }
+            return new CompressionResult(filename, scaledBitmap.getWidth(), scaledBitmap.getHeight(),
+                    Bitmap.CompressFormat.JPEG, bestQuality, best.size())
+                    .setProbeCount(probes);
+        } finally {
+            probe.recycle();
+            best.recycle();
+            mBitmapPool.put(scaledBitmap);
+        }
+    }
+
+    /**
+     * Compresses the image at the specified Uri String with the lowest quality whose structural similarity (SSIM)
+     * to the scaled source is at least the threshold set with {@link Builder#similarityThreshold(float)}.
+     *
+     * @param imageUri Uri (String) of the source image you wish to compress
+     * @param format   {@link Bitmap.CompressFormat#JPEG} or {@link Bitmap.CompressFormat#WEBP}
+     * @return the compressed image, or null if the source could not be decoded or written
+     */
+    public CompressionResult compressToSimilarity(String imageUri, Bitmap.CompressFormat format) {
+        return compressToSimilarity(imageUri, format, mSimilarityThreshold);
+    }
+
+    /**
+     * Compresses the image at the specified Uri String with the lowest quality whose structural similarity (SSIM)
+     * to the scaled source is at least {@code minSimilarity}. Each trial encode is decoded back at a reduced
+     * size and compared with a luma proxy of the source, so the cost of a probe is dominated by the encode.
+     *
+     * @param imageUri      Uri (String) of the source image you wish to compress
+     * @param format        {@link Bitmap.CompressFormat#JPEG} or {@link Bitmap.CompressFormat#WEBP}
+     * @param minSimilarity minimum SSIM, between 0 and 1
+     * @return the compressed image, or null if the source could not be decoded or written
+     */
+    public CompressionResult compressToSimilarity(String imageUri, Bitmap.CompressFormat format, float minSimilarity) {
+        if (format == Bitmap.CompressFormat.PNG) {
+            throw new IllegalArgumentException("PNG is lossless, choose JPEG or WEBP.");
+        }
+
+        Bitmap scaledBitmap = decodeScaledBitmap(imageUri);
+        if (scaledBitmap == null) {
+            return null;
+        }
+
+        int width = scaledBitmap.getWidth();
+        int height = scaledBitmap.getHeight();
+        int sampleSize = 1;
+        while (Math.max(width, height) / sampleSize > SIMILARITY_PROXY_SIZE) {
+            sampleSize *= 2;
+        }
+        int proxyWidth = Math.max(1, width / sampleSize);
+        int proxyHeight = Math.max(1, height / sampleSize);
+
+        LumaPlane reference = new LumaPlane();
+        reference.set(scaledBitmap, proxyWidth, proxyHeight);
+        LumaPlane candidate = new LumaPlane();
+        Ssim ssim = new Ssim();
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inTempStorage = mBitmapPool.acquireTempStorage();
+
+        ByteSink probe = ByteSink.obtain();
+        ByteSink best = ByteSink.obtain();
+        try {
+            int low = MIN_QUALITY;
+            int high = MAX_QUALITY;
+            int bestQuality = -1;
+            double bestSimilarity = Double.NaN;
+            int probes = 0;
+
+            while (low <= high) {
+                int quality = (low + high) >>> 1;
+                probe.reset();
+                scaledBitmap.compress(format, quality, probe);
+                probes++;
+
+//              the decoded probe becomes the reuse target of the next probe
+                Bitmap decoded = decodeProbe(probe, options);
+                options.inBitmap = decoded;
+                if (decoded == null || decoded.getWidth() < proxyWidth || decoded.getHeight() < proxyHeight) {
+                    break;
+                }
+                candidate.set(decoded, proxyWidth, proxyHeight);
+                double similarity = ssim.compute(reference, candidate);
+
+                if (similarity >= minSimilarity) {
+                    bestQuality = quality;
+                    bestSimilarity = similarity;
+                    ByteSink swap = best;
+                    best = probe;
+                    probe = swap;
+                    high = quality - 1;
+                } else {
+                    low = quality + 1;
+                }
+            }
+
+            if (bestQuality == -1) {
+                bestQuality = MAX_QUALITY;
+                best.reset();
+                scaledBitmap.compress(format, bestQuality, best);
+            }
+            mMetrics.recordSimilaritySearch(probes);
+
+            String filename = getFilename(format);
+            if (!writeToFile(best, filename)) {
+                return null;
+            }
+            return new CompressionResult(filename, width, height, format, bestQuality, best.size())
+                    .setProbeCount(probes)
+                    .setSimilarity((float) bestSimilarity);
+        } finally {
+            probe.recycle();
+            best.recycle();
+            mBitmapPool.releaseTempStorage(options.inTempStorage);
+            mBitmapPool.put(options.inBitmap);
+            mBitmapPool.put(scaledBitmap);
+        }
+    }
+
+    /**
+     * Compresses the image at the specified Uri String in whichever of JPEG, WebP and PNG gives the smallest file.
+     * A small downscaled sample is encoded in every candidate format in parallel, and the full image is then
+     * encoded only in the winning format. Flat graphics such as screenshots usually end up as PNG.
+     *
+     * @param imageUri Uri (String) of the source image you wish to compress
+     * @return the compressed image with its chosen format and the estimated bytes saved over JPEG, or null if the
+     * source could not be decoded or written
+     */
+    public CompressionResult compressAuto(String imageUri) {
+        Bitmap scaledBitmap = decodeScaledBitmap(imageUri);
+        if (scaledBitmap == null) {
+            return null;
+        }
+
+        final Bitmap sample = createSample(scaledBitmap, FORMAT_SAMPLE_SIZE);
+        ByteSink[] sinks = new ByteSink[CANDIDATE_FORMATS.length];
+        List<Future<Integer>> futures = new ArrayList<>(CANDIDATE_FORMATS.length);
+        boolean sampleInUse = false;
+        try {
+            for (int i = 0; i < CANDIDATE_FORMATS.length; i++) {
+                final Bitmap.CompressFormat format = CANDIDATE_FORMATS[i];
+                final ByteSink sink = ByteSink.obtain();
+                sinks[i] = sink;
+                futures.add(mExecutor.submit(CompressionExecutor.currentPriority(), new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        sample.compress(format, DEFAULT_QUALITY, sink);
+                        return sink.size();
+                    }
+                }));
+            }
+
+            long[] sampleSizes = new long[CANDIDATE_FORMATS.length];
+            int winner = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    sampleSizes[i] = mExecutor.join(futures.get(i));
+                } catch (ExecutionException e) {
+                    Log.w(LOG_TAG, "Unable to encode sample as " + CANDIDATE_FORMATS[i], e.getCause());
+                    sampleSizes[i] = Long.MAX_VALUE;
+                }
+                if (sampleSizes[i] < sampleSizes[winner]) {
+                    winner = i;
+                }
+            }
+            if (sampleSizes[winner] == Long.MAX_VALUE) {
+                return null;
+            }
+
+            Bitmap.CompressFormat format = CANDIDATE_FORMATS[winner];
+            ByteSink out = sinks[winner];
+            out.reset();
+            scaledBitmap.compress(format, DEFAULT_QUALITY, out);
+
+//          the JPEG size is extrapolated from the sample ratio instead of paying for a second full encode
+            long bytesSaved = 0;
+            if (winner != 0 && sampleSizes[0] != Long.MAX_VALUE && sampleSizes[winner] > 0) {
+                bytesSaved = out.size() * sampleSizes[0] / sampleSizes[winner] - out.size();
+            }
+            mMetrics.recordFormatRace(format, bytesSaved);
+
+            String filename = getFilename(format);
+            if (!writeToFile(out, filename)) {
+                return null;
+            }
+            return new CompressionResult(filename, scaledBitmap.getWidth(), scaledBitmap.getHeight(), format,
+                    DEFAULT_QUALITY, out.size())
+                    .setProbeCount(CANDIDATE_FORMATS.length)
+                    .setBytesSaved(bytesSaved);
+        } catch (InterruptedException e) {
+//          candidates may still be encoding the sample, so it must not go back to the pool
+            sampleInUse = true;
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (!sampleInUse) {
+                for (ByteSink sink : sinks) {
+                    if (sink != null) {
+                        sink.recycle();
+                    }
+                }
+                mBitmapPool.put(sample);
+            }
+            mBitmapPool.put(scaledBitmap);
+        }
+    }
+
+    /**
+     * Scales the bitmap down to the given size. Bilinear filtering only looks at the four nearest pixels, so
+     * reductions of more than half are done in successive halving steps that each average every source pixel.
+     * With a resampling filter set the reduction is done in one step by the {@link Resampler} instead.
+     *
+     * @return a pooled bitmap of the given size; the source is left untouched
+     */
+    private Bitmap downscale(Bitmap source, int width, int height) {
+        if (mResampler != null) {
+            Bitmap output = mBitmapPool.getOrCreate(width, height, Bitmap.Config.ARGB_8888);
+            resample(source, output);
+            return output;
+        }
+
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        Matrix matrix = new Matrix();
+        Bitmap current = source;
+        while (true) {
+            int stepWidth = width;
+            int stepHeight = height;
+            if (current.getWidth() > 2 * width || current.getHeight() > 2 * height) {
+                stepWidth = Math.max(width, (current.getWidth() + 1) / 2);
+                stepHeight = Math.max(height, (current.getHeight() + 1) / 2);
+            }
+
+            Bitmap next = mBitmapPool.getOrCreate(stepWidth, stepHeight, Bitmap.Config.ARGB_8888);
+            matrix.setScale(stepWidth / (float) current.getWidth(), stepHeight / (float) current.getHeight());
+            new Canvas(next).drawBitmap(current, matrix, paint);
+            if (current != source) {
+                mBitmapPool.put(current);
+            }
+            current = next;
+            if (stepWidth == width && stepHeight == height) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Fits an image in a box, keeping its aspect ratio and never enlarging it.
+     *
+     * @return the fitted width and height
+     */
+    private static int[] fit(int width, int height, int maxWidth, int maxHeight) {
+        float scale = Math.min(1f, Math.min(maxWidth / (float) width, maxHeight / (float) height));
+        return new int[]{Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale))};
+    }
+
+    /**
+     * Draws a downscaled copy of the bitmap whose longest side is at most {@code maxSize}.
+     */
+    private Bitmap createSample(Bitmap source, int maxSize) {
+        float scale = Math.min(1f, maxSize / (float) Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, Math.round(source.getWidth() * scale));
+        int height = Math.max(1, Math.round(source.getHeight() * scale));
+
+        Bitmap sample = mBitmapPool.getOrCreate(width, height, Bitmap.Config.ARGB_8888);
+        Matrix matrix = new Matrix();
+        matrix.setScale(width / (float) source.getWidth(), height / (float) source.getHeight());
+        new Canvas(sample).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return sample;
+    }
+
+    private Bitmap decodeProbe(ByteSink probe, BitmapFactory.Options options) {
+        if (options.inBitmap != null) {
+            try {
+                return BitmapFactory.decodeByteArray(probe.buffer(), 0, probe.size(), options);
+            } catch (IllegalArgumentException e) {
+                mBitmapPool.put(options.inBitmap);
+                options.inBitmap = null;
+            }
+        }
+        return BitmapFactory.decodeByteArray(probe.buffer(), 0, probe.size(), options);
+    }
+
+    // Actually does the compression of the Image
+    private String compressImage(String imageUri) {
+        ImageSource source = ImageSource.fromFile(getRealPathFromURI(imageUri));
+        String cacheKey = cacheKey(source);
+        String cached = getCached(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
+        }
+        return compressImage(source, header, cacheKey);
+    }
+
+    /**
+     * @param cacheKey key of the result in the disk cache, or null to write it under the output directory
+     */
+    private String compressImage(ImageSource source, ImageHeader header, String cacheKey) {
+
+        ByteSink encoded = ByteSink.obtain();
+        try {
+            if (encode(source, header, encoded) == null) {
+                return null;
+            }
 
-            // Create an image file name
-            String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-            String imageFileName = "JPEG_" + timeStamp + "_";
-            File storageDir = Environment.getExternalStoragePublicDirectory(
-                    Environment.DIRECTORY_PICTURES);
-            File image = File.createTempFile(
-                    imageFileName,  /* prefix */
-                    ".jpg",         /* suffix */
-                    storageDir      /* directory */
-            );
-            FileOutputStream out = new FileOutputStream(image);
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, out);
+            CompressionExecutor.throwIfCancelled();
 
-            // Compress the new file
-            Uri copyImageUri = Uri.fromFile(image);
+            if (cacheKey != null) {
+                File cached = mDiskCache.put(cacheKey, encoded);
+                if (cached != null) {
+                    return cached.getPath();
+                }
+            }
 
-            String compressImagePath = compressImage(copyImageUri.toString());
+//          write the compressed bitmap at the destination specified by filename.
+            String filename = getFilename();
+            return writeToFile(encoded, filename) ? filename : null;
+        } finally {
+            encoded.recycle();
+        }
+    }
 
-            // Delete the file create from the drawable Id
-            if (image.exists()) {
-                boolean isdeleted = image.delete();
-                Log.d(LOG_TAG, (isdeleted) ? "SourceImage File deleted" : "SourceImage File not deleted");
+    /**
+     * Builds the disk cache key of the default compression of the source from a hash of its bytes, the compression
+     * parameters and the settings of this instance that change the output, so that differently configured
+     * instances do not share entries.
+     *
+     * @return the key, or null if the disk cache is disabled or the source cannot be read
+     */
+    private String cacheKey(ImageSource source) {
+        if (mDiskCache == null) {
+            return null;
+        }
+        byte[] buffer = mBitmapPool.acquireTempStorage();
+        try {
+            InputStream in = source.openStream();
+            try {
+                return Long.toHexString(ContentHash.hash(in, buffer)) + "_jpeg" + DEFAULT_QUALITY + "_1795x1287"
+                        + mOutputSettings;
+            } finally {
+                in.close();
             }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to hash " + source, e);
+            return null;
+        } finally {
+            mBitmapPool.releaseTempStorage(buffer);
+        }
+    }
 
-            // return the path to the compress image
-            return compressImagePath;
+    /**
+     * @return path of the cached result for the key, or null if there is none
+     */
+    private String getCached(String cacheKey) {
+        if (cacheKey == null) {
+            return null;
+        }
+        File cached = mDiskCache.get(cacheKey);
+        mMetrics.recordDiskCacheLookup(cached != null);
+        return cached != null ? cached.getPath() : null;
+    }
+
+    private CompressionResult compress(ImageSource source, OutputStream out) throws IOException {
+        ByteSink encoded = ByteSink.obtain();
+        try {
+            CompressionResult result = encode(source, encoded);
+            if (result != null) {
+                encoded.writeTo(out);
+            }
+            return result;
+        } finally {
+            encoded.recycle();
+        }
+    }
+
+    /**
+     * Decodes, scales and rotates the source and encodes it into the sink as a JPEG at the default quality.
+     *
+     * @return the compressed image without a file path, or null if the source could not be decoded
+     */
+    private CompressionResult encode(ImageSource source, ByteSink sink) {
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
+        }
+        return encode(source, header, sink);
+    }
+
+    private CompressionResult encode(ImageSource source, ImageHeader header, ByteSink sink) {
+        Bitmap scaledBitmap = decodeScaledBitmap(source, header);
+        if (scaledBitmap == null) {
+            return null;
+        }
+        try {
+            CompressionExecutor.throwIfCancelled();
+            scaledBitmap.compress(Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, sink);
+            return new CompressionResult(null, scaledBitmap.getWidth(), scaledBitmap.getHeight(),
+                    Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY, sink.size());
+        } finally {
+            mBitmapPool.put(scaledBitmap);
+        }
+    }
+
+    private boolean writeToFile(ByteSink sink, String filename) {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(filename);
+            sink.writeTo(out);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            new File(filename).delete();
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
         }
-
-        return null;
     }
 
-
     /**
-     * Compresses the image at the specified Uri String and and return the bitmap data of the compressed image.
+     * Decodes the image at the specified Uri String, scaled to fit the output size and rotated upright.
      *
-     * @param imageUri imageUri Uri (String) of the source image you wish to compress
-     * @return Bitmap format of the new image file (compressed)
-     * @throws IOException
+     * @param imageUri Uri (String) of the source image
+     * @return a pooled bitmap that the caller must hand back to the pool, or null if decoding failed
      */
-    public Bitmap getCompressBitmap(String imageUri) throws IOException {
-        File imageFile = new File(compressImage(imageUri));
-        Uri newImageUri = Uri.fromFile(imageFile);
-        Bitmap bitmap = MediaStore.Images.Media.getBitmap(mContext.getContentResolver(), newImageUri);
-        return bitmap;
+    private Bitmap decodeScaledBitmap(String imageUri) {
+        return decodeScaledBitmap(ImageSource.fromFile(getRealPathFromURI(imageUri)));
     }
 
     /**
-     * Compresses the image at the specified Uri String and and return the bitmap data of the compressed image.
+     * Decodes the source, scaled to fit the output size and rotated upright.
      *
-     * @param imageUri          Uri (String) of the source image you wish to compress
-     * @param deleteSourceImage If True will delete the source file
-     * @return Compress image bitmap
-     * @throws IOException
+     * @param source the encoded source image
+     * @return a pooled bitmap that the caller must hand back to the pool, or null if decoding failed
      */
-    public Bitmap getCompressBitmap(String imageUri, boolean deleteSourceImage) throws IOException {
-        File imageFile = new File(compressImage(imageUri));
-        Uri newImageUri = Uri.fromFile(imageFile);
-        Bitmap bitmap = MediaStore.Images.Media.getBitmap(mContext.getContentResolver(), newImageUri);
+    private Bitmap decodeScaledBitmap(ImageSource source) {
 
-        if (deleteSourceImage) {
-            File source = new File(getRealPathFromURI(imageUri));
-            if (source.exists()) {
-                boolean isdeleted = source.delete();
-                Log.d(LOG_TAG, (isdeleted) ? "SourceImage File deleted" : "SourceImage File not deleted");
-            }
+//      size and orientation come from a single read of the header so that scale and rotation can be applied in
+//      one pass without a separate bounds decode
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
         }
-        return bitmap;
+        return decodeScaledBitmap(source, header);
     }
 
-    // Actually does the compression of the Image
-    private String compressImage(String imageUri) {
-
-        String filePath = getRealPathFromURI(imageUri);
-        Bitmap scaledBitmap = null;
-
-        BitmapFactory.Options options = new BitmapFactory.Options();
-
-//      by setting this field as true, the actual bitmap pixels are not loaded in the memory. Just the bounds are loaded. If
-//      you try the use the bitmap here, you will get null.
-        options.inJustDecodeBounds = true;
-        Bitmap bmp = BitmapFactory.decodeFile(filePath, options);
+    /**
+     * Decodes the source, scaled to fit the output size and rotated upright.
+     *
+     * @param source the encoded source image
+     * @param header the header read from the source
+     * @return a pooled bitmap that the caller must hand back to the pool, or null if decoding failed
+     */
+    Bitmap decodeScaledBitmap(ImageSource source, ImageHeader header) {
+        int[] targetSize = defaultTargetSize(header);
+        return decodeScaledBitmap(source, header, targetSize[0], targetSize[1]);
+    }
 
-        int actualHeight = options.outHeight;
-        int actualWidth = options.outWidth;
+    /**
+     * Fits the image in 1795x1287, in portrait or landscape according to the image.
+     *
+     * @return width and height of the scaled image before rotation
+     */
+    private static int[] defaultTargetSize(ImageHeader header) {
+        int actualHeight = header.height;
+        int actualWidth = header.width;
         float maxHeight, maxWidth;
 
         if (actualHeight > actualWidth) {
@@ -206,9 +1622,132 @@ public class Compressor {
             actualWidth = (int) maxWidth;
         }
 
-//      setting inSampleSize value allows to load a scaled down version of the original image
+        return new int[]{actualWidth, actualHeight};
+    }
+
+    /**
+     * Estimates the peak pixel memory of compressing an image with the given header: one band of a tiled decode
+     * plus the output bitmap, or what {@link DecodePlanner#peakBytes} holds for the sub-sampled decode, or
+     * {@link DecodePlanner#resampledPeakBytes} when the {@link Resampler} scales it.
+     */
+    private long estimateDecodeBytes(ImageHeader header) {
+        int[] targetSize = defaultTargetSize(header);
+        long fullBytes = (long) header.width * header.height * 4;
+        if (fullBytes > mTiledDecodeThreshold) {
+            return (long) targetSize[0] * targetSize[1] * 4 + TiledDecoder.DEFAULT_BAND_SIZE;
+        }
+
+        boolean rotated = header.orientation > ExifInterface.ORIENTATION_NORMAL;
+        DecodePlanner.Plan plan = DecodePlanner.plan(header.width, header.height, targetSize[0], targetSize[1]);
+        if (mResampler != null) {
+            return DecodePlanner.resampledPeakBytes(DecodePlanner.sampledSize(header.width, plan.sampleSize),
+                    DecodePlanner.sampledSize(header.height, plan.sampleSize), targetSize[0], targetSize[1], rotated);
+        }
+        return DecodePlanner.peakBytes(plan, targetSize[0], targetSize[1], rotated);
+    }
+
+    /**
+     * Decodes the source scaled to the given size before rotation and rotated upright.
+     *
+     * @param source       the encoded source image
+     * @param header       the header read from the source
+     * @param targetWidth  width of the scaled image before rotation
+     * @param targetHeight height of the scaled image before rotation
+     * @return a pooled bitmap that the caller must hand back to the pool, or null if decoding failed
+     */
+    private Bitmap decodeScaledBitmap(ImageSource source, ImageHeader header, int targetWidth, int targetHeight) {
+        int orientation = header.orientation;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.outWidth = header.width;
+        options.outHeight = header.height;
+
+        Bitmap scaledBitmap = null;
+
+//      images whose full decode would exceed the threshold are streamed through a region decoder band by band
+        long decodedBytes = (long) options.outWidth * options.outHeight * 4;
+        if (decodedBytes > mTiledDecodeThreshold) {
+            try {
+                scaledBitmap = mTiledDecoder.decode(source, options.outWidth, options.outHeight,
+                        targetWidth, targetHeight, orientation);
+            } catch (OutOfMemoryError exception) {
+                exception.printStackTrace();
+            }
+        }
+        if (scaledBitmap == null) {
+            scaledBitmap = decodeScaled(source, options, targetWidth, targetHeight, orientation);
+        }
+        return scaledBitmap;
+    }
+
+    /**
+     * Decodes the thumbnail embedded in the EXIF data of the source when it is at least as large as the target
+     * and has the same aspect ratio as the image; many cameras letterbox the thumbnail to 4:3.
+     *
+     * @return a pooled bitmap that the caller must hand back to the pool, or null if the thumbnail cannot be used
+     */
+    private Bitmap decodeThumbnail(ImageSource source, ImageHeader header, int targetWidth, int targetHeight) {
+        if (!header.hasThumbnail() || header.thumbnailWidth < targetWidth || header.thumbnailHeight < targetHeight) {
+            return null;
+        }
+        float imageRatio = header.width / (float) header.height;
+        float thumbnailRatio = header.thumbnailWidth / (float) header.thumbnailHeight;
+        if (Math.abs(imageRatio - thumbnailRatio) > THUMBNAIL_ASPECT_TOLERANCE * imageRatio) {
+            return null;
+        }
+
+        byte[] thumbnail;
+        try {
+            thumbnail = source.readRange(header.thumbnailOffset, header.thumbnailLength);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read EXIF thumbnail of " + source, e);
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.outWidth = header.thumbnailWidth;
+        options.outHeight = header.thumbnailHeight;
+        return decodeScaled(ImageSource.fromBytes(thumbnail, 0, thumbnail.length), options, targetWidth,
+                targetHeight, header.orientation);
+    }
+
+    /**
+     * @return the header of the source, or null if it cannot be read or its size is unknown
+     */
+    private ImageHeader readHeader(ImageSource source) {
+        ImageHeader header = new ImageHeader();
+        try {
+            source.readHeader(header);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read " + source, e);
+            return null;
+        }
+        return header.hasSize() ? header : null;
+    }
 
-        options.inSampleSize = calculateInSampleSize(options, actualWidth, actualHeight);
+    /**
+     * Decodes the whole image at the target size when the decoder can produce it directly, otherwise a sub-sampled
+     * version that is then scaled into the output bitmap, and rotates it upright.
+     *
+     * @param source       the encoded source image
+     * @param options      options holding the bounds of the source image
+     * @param targetWidth  width of the scaled image before rotation
+     * @param targetHeight height of the scaled image before rotation
+     * @param orientation  EXIF orientation of the source
+     * @return the output bitmap, or null if the image could not be decoded
+     */
+    private Bitmap decodeScaled(ImageSource source, BitmapFactory.Options options, int targetWidth,
+                                int targetHeight, int orientation) {
+
+//      sub-sample by a power of two and let the decoder scale the rest of the way by the ratio of two densities,
+//      unless the resampler is to do the scaling
+        DecodePlanner.Plan plan = DecodePlanner.plan(options.outWidth, options.outHeight, targetWidth, targetHeight);
+        options.inSampleSize = plan.sampleSize;
+        if (plan.isScaled() && mResampler == null) {
+            options.inScaled = true;
+            options.inDensity = plan.density;
+            options.inTargetDensity = plan.targetDensity;
+        } else {
+            options.inScaled = false;
+        }
 
 //      inJustDecodeBounds set to false to load the actual bitmap
         options.inJustDecodeBounds = false;
@@ -216,104 +1755,263 @@ public class Compressor {
 //      this options allow android to claim the bitmap memory if it runs low on memory
         options.inPurgeable = true;
         options.inInputShareable = true;
-        options.inTempStorage = new byte[16 * 1024];
+        options.inTempStorage = mBitmapPool.acquireTempStorage();
 
+        Bitmap bmp = null;
         try {
 //          load the bitmap from its path
-            bmp = BitmapFactory.decodeFile(filePath, options);
+            bmp = decodePooled(source, options);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read " + source, e);
         } catch (OutOfMemoryError exception) {
             exception.printStackTrace();
-
+        } finally {
+            mBitmapPool.releaseTempStorage(options.inTempStorage);
+        }
+        if (bmp == null) {
+            return null;
         }
+        if (options.inScaled) {
+//          the decoder tags scaled bitmaps with the target density, which canvases and drawables would scale by
+            bmp.setDensity(Bitmap.DENSITY_NONE);
+        }
+        if (bmp.getWidth() == targetWidth && bmp.getHeight() == targetHeight
+                && orientation <= ExifInterface.ORIENTATION_NORMAL) {
+            return bmp;
+        }
+
+//      scale and rotate into the output bitmap with a single allocation, then release the decoded pixels
+        Bitmap scaledBitmap = null;
         try {
-            scaledBitmap = Bitmap.createBitmap(actualWidth, actualHeight, Bitmap.Config.ARGB_8888);
+            CompressionExecutor.throwIfCancelled();
+            scaledBitmap = transform(bmp, targetWidth, targetHeight, orientation);
         } catch (OutOfMemoryError exception) {
             exception.printStackTrace();
+        } finally {
+            mBitmapPool.put(bmp);
         }
+        return scaledBitmap;
+    }
 
-        float ratioX = actualWidth / (float) options.outWidth;
-        float ratioY = actualHeight / (float) options.outHeight;
-        float middleX = actualWidth / 2.0f;
-        float middleY = actualHeight / 2.0f;
+    /**
+     * Decodes the source into a bitmap taken from the pool when one is large enough, falling back to a fresh
+     * allocation when the decoder refuses to reuse it.
+     *
+     * @param source  the encoded source image
+     * @param options decode options with the bounds, inSampleSize and densities already filled in
+     * @return the decoded bitmap
+     */
+    private Bitmap decodePooled(ImageSource source, BitmapFactory.Options options) throws IOException {
+        int decodedWidth = DecodePlanner.sampledSize(options.outWidth, options.inSampleSize);
+        int decodedHeight = DecodePlanner.sampledSize(options.outHeight, options.inSampleSize);
+        if (options.inScaled && options.inDensity != 0 && options.inTargetDensity != 0) {
+            decodedWidth = DecodePlanner.scaledSize(decodedWidth, options.inDensity, options.inTargetDensity);
+            decodedHeight = DecodePlanner.scaledSize(decodedHeight, options.inDensity, options.inTargetDensity);
+        }
 
-        Matrix scaleMatrix = new Matrix();
-        scaleMatrix.setScale(ratioX, ratioY, middleX, middleY);
+        options.inMutable = true;
+//      before KitKat a bitmap can only be reused by a decode that neither samples nor scales
+        options.inBitmap = options.inScaled && Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT ? null
+                : mBitmapPool.getForDecode(decodedWidth, decodedHeight, Bitmap.Config.ARGB_8888,
+                options.inSampleSize);
+        if (options.inBitmap != null) {
+            try {
+                return source.decode(options);
+            } catch (IllegalArgumentException e) {
+                Log.w(LOG_TAG, "Unable to reuse pooled bitmap for decode", e);
+                mBitmapPool.put(options.inBitmap);
+                options.inBitmap = null;
+            }
+        }
+        return source.decode(options);
+    }
 
-        Canvas canvas = new Canvas(scaledBitmap);
-        canvas.setMatrix(scaleMatrix);
-        canvas.drawBitmap(bmp, middleX - bmp.getWidth() / 2, middleY - bmp.getHeight() / 2, new Paint(Paint.FILTER_BITMAP_FLAG));
+    /**
+     * Scales the source bitmap to the target size and applies the EXIF orientation using one combined
+     * matrix, so that the only pixel buffer allocated is the final output bitmap.
+     *
+     * @param source       decoded (sub-sampled) bitmap
+     * @param targetWidth  width of the scaled image before rotation
+     * @param targetHeight height of the scaled image before rotation
+     * @param orientation  EXIF orientation of the source
+     * @return the scaled and rotated bitmap
+     */
+    private Bitmap transform(Bitmap source, int targetWidth, int targetHeight, int orientation) {
+        if (mResampler != null) {
+            return resampleAndRotate(source, targetWidth, targetHeight, orientation);
+        }
 
-//      check the rotation of the image and display it properly
-        ExifInterface exif;
-        try {
-            exif = new ExifInterface(filePath);
+        Matrix matrix = new Matrix();
+        matrix.setScale(targetWidth / (float) source.getWidth(), targetHeight / (float) source.getHeight());
+        matrix.postConcat(orientationMatrix(orientation, targetWidth, targetHeight));
 
-            int orientation = exif.getAttributeInt(
-                    ExifInterface.TAG_ORIENTATION, 0);
-            Log.d("EXIF", "Exif: " + orientation);
-            Matrix matrix = new Matrix();
-            if (orientation == 6) {
-                matrix.postRotate(90);
-                Log.d("EXIF", "Exif: " + orientation);
-            } else if (orientation == 3) {
-                matrix.postRotate(180);
-                Log.d("EXIF", "Exif: " + orientation);
-            } else if (orientation == 8) {
-                matrix.postRotate(270);
-                Log.d("EXIF", "Exif: " + orientation);
-            }
-            scaledBitmap = Bitmap.createBitmap(scaledBitmap, 0, 0,
-                    scaledBitmap.getWidth(), scaledBitmap.getHeight(), matrix,
-                    true);
-        } catch (IOException e) {
-            e.printStackTrace();
+        Bitmap output = mBitmapPool.getOrCreate(outputWidth(orientation, targetWidth, targetHeight),
+                outputHeight(orientation, targetWidth, targetHeight), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(output);
+        canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return output;
+    }
+
+    /**
+     * Scales with the {@link Resampler}, then turns the result upright. The rotation moves whole pixels, so the
+     * canvas draw it takes does not filter.
+     */
+    private Bitmap resampleAndRotate(Bitmap source, int targetWidth, int targetHeight, int orientation) {
+        Bitmap scaled = mBitmapPool.getOrCreate(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+        resample(source, scaled);
+        if (orientation <= ExifInterface.ORIENTATION_NORMAL) {
+            return scaled;
         }
 
-        FileOutputStream out = null;
-        String filename = getFilename();
-        try {
-            out = new FileOutputStream(filename);
+        Bitmap output = mBitmapPool.getOrCreate(outputWidth(orientation, targetWidth, targetHeight),
+                outputHeight(orientation, targetWidth, targetHeight), Bitmap.Config.ARGB_8888);
+        new Canvas(output).drawBitmap(scaled, orientationMatrix(orientation, targetWidth, targetHeight), null);
+        mBitmapPool.put(scaled);
+        return output;
+    }
 
-//          write the compressed bitmap at the destination specified by filename.
-            scaledBitmap.compress(Bitmap.CompressFormat.JPEG, 80, out);
+    /**
+     * Resamples all of {@code source} into all of {@code target}. Both bitmaps are copied to pixel arrays, which
+     * takes as much memory again as the two bitmaps, see {@link DecodePlanner#resampledPeakBytes}.
+     */
+    private void resample(Bitmap source, Bitmap target) {
+        int sourceWidth = source.getWidth();
+        int sourceHeight = source.getHeight();
+        int targetWidth = target.getWidth();
+        int targetHeight = target.getHeight();
+
+        int[] sourcePixels = new int[sourceWidth * sourceHeight];
+        source.getPixels(sourcePixels, 0, sourceWidth, 0, 0, sourceWidth, sourceHeight);
+        int[] targetPixels = new int[targetWidth * targetHeight];
+        mResampler.resize(sourcePixels, sourceWidth, sourceHeight, targetPixels, targetWidth, targetHeight);
+        target.setPixels(targetPixels, 0, targetWidth, 0, 0, targetWidth, targetHeight);
+    }
 
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+    /**
+     * Builds the matrix that turns the stored pixels of an image of the given size upright according to its
+     * EXIF orientation.
+     *
+     * @param orientation EXIF orientation of the source
+     * @param width       width of the image before rotation
+     * @param height      height of the image before rotation
+     * @return the orientation matrix
+     */
+    static Matrix orientationMatrix(int orientation, int width, int height) {
+        Matrix matrix = new Matrix();
+
+//      every rotation is followed by a translation that moves the result back into the positive quadrant
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1, 1);
+                matrix.postTranslate(width, 0);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                matrix.postTranslate(width, height);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1, -1);
+                matrix.postTranslate(0, height);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                matrix.postTranslate(height, 0);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(-90);
+                matrix.postScale(-1, 1);
+                matrix.postTranslate(height, width);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(-90);
+                matrix.postTranslate(0, width);
+                break;
+            default:
+                break;
         }
+        return matrix;
+    }
 
-        return filename;
-
+    static int outputWidth(int orientation, int width, int height) {
+        return isTransposed(orientation) ? height : width;
     }
 
-    private int calculateInSampleSize(BitmapFactory.Options options, int reqWidth, int reqHeight) {
-        final int height = options.outHeight;
-        final int width = options.outWidth;
-        int inSampleSize = 1;
+    static int outputHeight(int orientation, int width, int height) {
+        return isTransposed(orientation) ? width : height;
+    }
 
-        if (height > reqHeight || width > reqWidth) {
-            final int heightRatio = Math.round((float) height / (float) reqHeight);
-            final int widthRatio = Math.round((float) width / (float) reqWidth);
-            inSampleSize = heightRatio < widthRatio ? heightRatio : widthRatio;
-        }
-        final float totalPixels = width * height;
-        final float totalReqPixelsCap = reqWidth * reqHeight * 2;
-        while (totalPixels / (inSampleSize * inSampleSize) > totalReqPixelsCap) {
-            inSampleSize++;
+    /**
+     * @return whether the orientation swaps width and height; values outside the eight EXIF orientations are
+     * left as they are, like {@link #orientationMatrix} leaves them
+     */
+    static boolean isTransposed(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return true;
+            default:
+                return false;
         }
-
-        return inSampleSize;
     }
 
     private String getFilename() {
+        return getFilename(Bitmap.CompressFormat.JPEG);
+    }
+
+    private String getFilename(Bitmap.CompressFormat format) {
+        return getFilename(format, "");
+    }
+
+    private String getFilename(Bitmap.CompressFormat format, String suffix) {
         File file = new File(Environment.getExternalStorageDirectory().getPath(), "SiliCompressor/Images");
         if (!file.exists()) {
             file.mkdirs();
         }
-        String uriSting = (file.getAbsolutePath() + "/" + System.currentTimeMillis() + ".jpg");
+        String name = System.currentTimeMillis() + suffix;
+        File output = new File(file, name + extension(format));
+
+//      parallel compressions can finish within the same millisecond, so the name is reserved atomically
+        try {
+            for (int i = 1; !output.createNewFile(); i++) {
+                output = new File(file, name + "_" + i + extension(format));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        String uriSting = output.getAbsolutePath();
         return uriSting;
 
     }
 
+    static String extension(Bitmap.CompressFormat format) {
+        switch (format) {
+            case PNG:
+                return ".png";
+            case WEBP:
+                return ".webp";
+            default:
+                return ".jpg";
+        }
+    }
+
+    /**
+     * Deletes the source file of the image and forgets its cached path.
+     */
+    private void deleteSourceImage(String imageUri) {
+        File source = new File(getRealPathFromURI(imageUri));
+        if (source.exists()) {
+            boolean isdeleted = source.delete();
+            Log.d(LOG_TAG, (isdeleted) ? "SourceImage File deleted" : "SourceImage File not deleted");
+        }
+        mUriPathCache.remove(imageUri);
+    }
+
     /**
      * Gets a valid path from the supply contentURI
      *
@@ -321,90 +2019,247 @@ public class Compressor {
      * @return A validPath of the image
      */
     private String getRealPathFromURI(String contentURI) {
-        Uri contentUri = Uri.parse(contentURI);
-        Cursor cursor = mContext.getContentResolver().query(contentUri, null, null, null, null);
-        if (cursor == null) {
-            return contentUri.getPath();
-        } else {
-            cursor.moveToFirst();
-            int index = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATA);
-            String str = cursor.getString(index);
-            cursor.close();
-            return str;
-        }
+        return mUriPathCache.get(contentURI);
     }
 
-    public String imageQuality(String imageUri) {
-        String filePath = getRealPathFromURI(imageUri);
-
-        //Get bitmap for original Image
-        BitmapFactory.Options opt = new BitmapFactory.Options();
-        opt.inDither = true;
-        opt.inPreferredConfig = Bitmap.Config.ARGB_8888;
-        Bitmap originalImageBitmap = BitmapFactory.decodeFile(filePath, opt);
-
-        //Get initial matrix of original image bitmap
-        Mat originalMatImage = new Mat();
-        Utils.bitmapToMat(originalImageBitmap, originalMatImage);
-
-        //Get grayscale version of original MstImage
-        Mat originalMatImageGrayscale = new Mat();
-        Imgproc.cvtColor(originalMatImage, originalMatImageGrayscale, Imgproc.COLOR_BGR2GRAY);
+    /**
+     * Scores how sharp the image at the specified Uri String is. The image is decoded sub-sampled to about the
+     * analysis resolution of the {@link BlurScorer} and scored as a grey {@link Mat}.
+     *
+     * @param imageUri Uri (String) of the image to score
+     * @return the score, or null if the image could not be decoded
+     */
+    public BlurScore scoreBlur(String imageUri) {
+        return scoreBlurAt(getRealPathFromURI(imageUri));
+    }
 
-        //Create destination Image bitmap from original Image bitmap
-        Bitmap destinationImageBitmap = Bitmap.createBitmap(originalImageBitmap);
+    BlurScore scoreBlurAt(String filePath) {
+        ImageSource source = ImageSource.fromFile(filePath);
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
+        }
 
-        //Get destination Image matrix from destination Image bitmap
-        Mat destinationImageMat = new Mat();
-        Utils.bitmapToMat(destinationImageBitmap, destinationImageMat);
+        Bitmap bitmap = decodeForAnalysis(source, header, mBlurScorer.getAnalysisSize());
+        if (bitmap == null) {
+            return null;
+        }
+        Mat rgba = new Mat();
+        Mat gray = new Mat();
+        try {
+            Utils.bitmapToMat(bitmap, rgba);
+            mBitmapPool.put(bitmap);
+            bitmap = null;
+
+            Imgproc.cvtColor(rgba, gray, Imgproc.COLOR_RGBA2GRAY);
+            rgba.release();
+            return mBlurScorer.score(gray);
+        } finally {
+            mBitmapPool.put(bitmap);
+            rgba.release();
+            gray.release();
+        }
+    }
 
-        //Get Laplacian image mat from destination Image matrix
-        Mat laplacianImageMat = new Mat();
-        int l = CvType.CV_8UC1; //8-bit grey scale image
-        destinationImageMat.convertTo(laplacianImageMat, l);
+    /**
+     * Maps the sharpness of the image at the specified Uri String tile by tile, so that photos that are only
+     * partly sharp, or blurred by motion, can be told apart from sharp ones. The tiles are analysed in parallel.
+     *
+     * @param imageUri Uri (String) of the image to analyse
+     * @return the sharpness map, or null if the image could not be decoded
+     */
+    public SharpnessMap analyzeSharpness(String imageUri) {
+        ImageSource source = ImageSource.fromFile(getRealPathFromURI(imageUri));
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
+        }
 
-        //calculates the Laplacian of the source image by adding up the second x and y derivatives calculated using the Sobel operator
-        Imgproc.Laplacian(originalMatImageGrayscale, laplacianImageMat, CvType.CV_8U);
+        LumaPlane plane = decodeLumaPlane(source, header);
+        return plane != null ? mSharpnessAnalyzer.analyze(plane) : null;
+    }
 
-        //Convert Laplacian 8-bit image mat to Laplacian grayscale image mat
-        Mat laplacianImage8bitMat = new Mat();
-        laplacianImageMat.convertTo(laplacianImage8bitMat, l);
+    /**
+     * Measures the exposure, sharpness, noise and contrast of the image at the specified Uri String in one pass
+     * over its luma, with rows split across the executor.
+     *
+     * @param imageUri Uri (String) of the image to measure
+     * @return the report, or null if the image could not be decoded
+     */
+    public MetricsReport measure(String imageUri) {
+        ImageSource source = ImageSource.fromFile(getRealPathFromURI(imageUri));
+        ImageHeader header = readHeader(source);
+        if (header == null) {
+            return null;
+        }
 
+        LumaPlane plane = decodeLumaPlane(source, header);
+        return plane != null ? mMetricsEngine.measure(plane) : null;
+    }
 
-        //Create bitmap of the Laplacian 8-bit image dimensions
-        Bitmap bmp = Bitmap.createBitmap(laplacianImage8bitMat.cols(), laplacianImage8bitMat.rows(), Bitmap.Config.ARGB_8888);
+    /**
+     * Decodes the luma of the source reduced to the default analysis size, ignoring its orientation.
+     *
+     * @return the plane, or null if decoding failed
+     */
+    private LumaPlane decodeLumaPlane(ImageSource source, ImageHeader header) {
+        int[] planeSize = fit(header.width, header.height, BlurScorer.DEFAULT_ANALYSIS_SIZE,
+                BlurScorer.DEFAULT_ANALYSIS_SIZE);
+        Bitmap bitmap = decodeForAnalysis(source, header, BlurScorer.DEFAULT_ANALYSIS_SIZE);
+        if (bitmap == null) {
+            return null;
+        }
+        LumaPlane plane = new LumaPlane();
+        try {
+            plane.set(bitmap, Math.min(planeSize[0], bitmap.getWidth()), Math.min(planeSize[1], bitmap.getHeight()));
+        } finally {
+            mBitmapPool.put(bitmap);
+        }
+        return plane;
+    }
 
-        //Convert Mat to Image of the same
-        Utils.matToBitmap(laplacianImage8bitMat, bmp);
-        int[] pixels = new int[bmp.getHeight() * bmp.getWidth()];
-        bmp.getPixels(pixels, 0, bmp.getWidth(), 0, 0, bmp.getWidth(), bmp.getHeight());
+    /**
+     * Decodes the source sub-sampled by a power of two to at least {@code analysisSize} on its longest side, or
+     * its full size if smaller, ignoring its orientation.
+     *
+     * @return a pooled bitmap that the caller must hand back to the pool, or null if decoding failed
+     */
+    private Bitmap decodeForAnalysis(ImageSource source, ImageHeader header, int analysisSize) {
+        int[] targetSize = fit(header.width, header.height, analysisSize, analysisSize);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.outWidth = header.width;
+        options.outHeight = header.height;
+        options.inSampleSize = DecodePlanner.sampleSize(header.width, header.height, targetSize[0], targetSize[1]);
+        options.inScaled = false;
+        options.inTempStorage = mBitmapPool.acquireTempStorage();
+        try {
+            return decodePooled(source, options);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read " + source, e);
+            return null;
+        } catch (OutOfMemoryError exception) {
+            exception.printStackTrace();
+            return null;
+        } finally {
+            mBitmapPool.releaseTempStorage(options.inTempStorage);
+        }
+    }
 
-        int maxLap = -16777216;
+    /**
+     * Estimates how sharp the JPEG at the specified Uri String is from its DCT coefficients, without decoding any
+     * pixels. Much cheaper than {@link #scoreBlur(String)} and meant for triaging many images; its scores are on
+     * a different scale, the ratio of high to low frequency energy.
+     *
+     * @param imageUri Uri (String) of the image to score
+     * @return the score, or null if the image is not a baseline JPEG or could not be read
+     */
+    public BlurScore estimateBlur(String imageUri) {
+        return estimateBlurAt(getRealPathFromURI(imageUri));
+    }
 
-        for (int i = 0; i < pixels.length; i++) {
-            if (pixels[i] > maxLap) {
-                Log.e("maxLap", "Pixel @ " + i + ": " + String.valueOf(pixels[i]) + ", MaxLap: " + maxLap);
-                Log.e("maxLap", "x = " + i % bmp.getWidth() + ", y = " + i / bmp.getWidth());
-                //bmp.setPixel(i % bmp.getWidth(), i / bmp.getWidth() , Color.MAGENTA);
-                maxLap = pixels[i];
+    BlurScore estimateBlurAt(String filePath) {
+        InputStream in = null;
+        try {
+            in = new FileInputStream(filePath);
+            return DctBlurEstimator.get().estimate(in, DctBlurEstimator.DEFAULT_THRESHOLD);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to read " + filePath, e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
+    }
 
-        int soglia = -6118750;
-        Log.e("maxLap", "MaxLap: " + maxLap);
-        if (maxLap < soglia || maxLap == soglia) {
+    /**
+     * @return "blur image" or "Not a blur image"
+     * @see #scoreBlur(String)
+     * @deprecated use {@link #scoreBlur(String)}, or {@link #measure(String)} for exposure, noise and contrast too
+     */
+    @Deprecated
+    public String imageQuality(String imageUri) {
+        BlurScore score = scoreBlur(imageUri);
+        if (score != null && score.isBlurry()) {
             return "blur image";
         } else {
             return "Not a blur image";
         }
     }
 
+    /**
+     * Receives the results of {@link Compressor#compressAll}.
+     */
+    public interface Callback {
+        /**
+         * Called on the main thread once per image.
+         *
+         * @param imageUri Uri (String) of the source image
+         * @param filePath filepath of the compressed image, or null if it could not be compressed
+         */
+        void onCompressed(String imageUri, String filePath);
+
+        /**
+         * Called on the main thread after every image has been reported.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Receives the two phases of {@link Compressor#compressProgressive}.
+     */
+    public interface ProgressiveCallback {
+        /**
+         * Called on the main thread with a low resolution preview of the upright image, unless it could not be
+         * decoded.
+         */
+        void onPreview(Bitmap preview);
+
+        /**
+         * Called on the main thread with the compressed image, or null if it could not be compressed or the
+         * request was cancelled.
+         */
+        void onCompressed(CompressedImage image);
+    }
+
+    /**
+     * Receives the outcome of {@link #processAsync(String, ProcessOptions, ProcessCallback)}.
+     */
+    public interface ProcessCallback {
+        /**
+         * Called on the main thread with a low resolution preview of the upright image, if one was requested and
+         * could be decoded.
+         */
+        void onPreview(Bitmap preview);
+
+        /**
+         * Called on the main thread with the result, or null if the image could not be processed or the request
+         * was cancelled.
+         */
+        void onProcessed(ProcessResult result);
+    }
+
     /**
      * Fluent API for creating {@link Compressor} instances.
      */
     public static class Builder {
 
         private final Context context;
+        static final long DEFAULT_TILED_DECODE_THRESHOLD = 128L * 1024 * 1024;
+        static final float DEFAULT_SIMILARITY_THRESHOLD = 0.97f;
+        static final int DEFAULT_PATH_CACHE_SIZE = 256;
+
+        private long bitmapPoolSize = defaultBitmapPoolSize();
+        private long tiledDecodeThreshold = DEFAULT_TILED_DECODE_THRESHOLD;
+        private float similarityThreshold = DEFAULT_SIMILARITY_THRESHOLD;
+        private int pathCacheSize = DEFAULT_PATH_CACHE_SIZE;
+        private long batchMemoryBudget = defaultBatchMemoryBudget();
+        private long diskCacheSize;
+        private Resampler.Filter resamplingFilter;
 
 
         /**
@@ -419,39 +2274,102 @@ public class Compressor {
 
 
         /**
-         * Create the {@link Compressor} instance.
+         * Set the maximum number of bytes of bitmaps kept for reuse between compressions.
          */
-        public Compressor build() {
-            Context context = this.context;
+        public Builder bitmapPoolSize(long maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("Bitmap pool size must not be negative.");
+            }
+            this.bitmapPoolSize = maxBytes;
+            return this;
+        }
 
-            return new Compressor(context);
+        /**
+         * Set the estimated full-resolution ARGB size, in bytes, above which images are decoded band by band
+         * with a region decoder instead of all at once.
+         */
+        public Builder tiledDecodeThreshold(long bytes) {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("Tiled decode threshold must be positive.");
+            }
+            this.tiledDecodeThreshold = bytes;
+            return this;
         }
-    }
 
-    class ImageCompressionAsyncTask extends AsyncTask<String, Void, String> {
-        ProgressDialog mProgressDialog;
+        /**
+         * Set the minimum structural similarity (SSIM) used by {@link Compressor#compressToSimilarity}.
+         */
+        public Builder similarityThreshold(float minSimilarity) {
+            if (minSimilarity <= 0 || minSimilarity > 1) {
+                throw new IllegalArgumentException("Similarity threshold must be in (0, 1].");
+            }
+            this.similarityThreshold = minSimilarity;
+            return this;
+        }
 
-        public ImageCompressionAsyncTask(Context context) {
+        /**
+         * Set the number of image Uris whose file paths are remembered between calls.
+         */
+        public Builder pathCacheSize(int maxEntries) {
+            if (maxEntries <= 0) {
+                throw new IllegalArgumentException("Path cache size must be positive.");
+            }
+            this.pathCacheSize = maxEntries;
+            return this;
+        }
 
+        /**
+         * Set the number of bytes of pixel memory that {@link Compressor#compressAll} may use at once.
+         */
+        public Builder batchMemoryBudget(long maxBytes) {
+            if (maxBytes <= 0) {
+                throw new IllegalArgumentException("Batch memory budget must be positive.");
+            }
+            this.batchMemoryBudget = maxBytes;
+            return this;
         }
 
-        @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
+        /**
+         * Keep up to the given number of bytes of compressed images in the app cache directory, keyed by the
+         * content of their source. Compressing an image again then returns the cached file instead of a new one.
+         * Cached files are deleted as the cache fills up, so callers that keep them must copy them. The cache is
+         * disabled by default.
+         */
+        public Builder diskCacheSize(long maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("Disk cache size must not be negative.");
+            }
+            this.diskCacheSize = maxBytes;
+            return this;
+        }
 
+        /**
+         * Scale decoded images with the given pure-Java filter instead of bitmap filtering on a canvas. Slower,
+         * but large reductions do not alias. Null, the default, keeps the canvas.
+         */
+        public Builder resamplingFilter(Resampler.Filter filter) {
+            this.resamplingFilter = filter;
+            return this;
         }
 
-        @Override
-        protected String doInBackground(String... params) {
+        /**
+         * Create the {@link Compressor} instance.
+         */
+        public Compressor build() {
+            Context context = this.context;
 
-            String filePath = compressImage(params[0]);
-            return filePath;
+            return new Compressor(context, new BitmapPool(bitmapPoolSize), tiledDecodeThreshold,
+                    similarityThreshold, pathCacheSize, batchMemoryBudget, diskCacheSize, resamplingFilter);
         }
 
-        @Override
-        protected void onPostExecute(String s) {
-
+        // an eighth of the heap, the share the platform guidelines suggest for bitmap caches
+        static long defaultBitmapPoolSize() {
+            return Runtime.getRuntime().maxMemory() / 8;
+        }
 
+        // a quarter of the heap, leaving room for the bitmap pool and the rest of the app
+        static long defaultBatchMemoryBudget() {
+            return Runtime.getRuntime().maxMemory() / 4;
         }
     }
 }
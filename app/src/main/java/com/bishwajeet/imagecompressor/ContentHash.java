@@ -0,0 +1,65 @@
+package com.bishwajeet.imagecompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fast non-cryptographic 64-bit hash of a byte stream, used to recognise a source image that was compressed
+ * before. The mixing follows xxHash64 on a single lane, which reads about as fast as the storage delivers.
+ */
+final class ContentHash {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hashes the stream to its end. The stream is not closed.
+     *
+     * @param buffer scratch buffer whose length is a multiple of 8
+     */
+    static long hash(InputStream in, byte[] buffer) throws IOException {
+        long hash = PRIME_5;
+        long length = 0;
+        int pending = 0;
+        int read;
+        while ((read = in.read(buffer, pending, buffer.length - pending)) != -1) {
+            int available = pending + read;
+            int words = available & ~7;
+            for (int i = 0; i < words; i += 8) {
+                hash ^= round(readLong(buffer, i));
+                hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+            }
+            length += words;
+            pending = available - words;
+            System.arraycopy(buffer, words, buffer, 0, pending);
+        }
+
+        for (int i = 0; i < pending; i++) {
+            hash ^= (buffer[i] & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+        hash += length + pending;
+
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long input) {
+        return Long.rotateLeft(input * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long readLong(byte[] b, int offset) {
+        return (b[offset] & 0xFFL) | (b[offset + 1] & 0xFFL) << 8 | (b[offset + 2] & 0xFFL) << 16
+                | (b[offset + 3] & 0xFFL) << 24 | (b[offset + 4] & 0xFFL) << 32 | (b[offset + 5] & 0xFFL) << 40
+                | (b[offset + 6] & 0xFFL) << 48 | (b[offset + 7] & 0xFFL) << 56;
+    }
+}
@@ -0,0 +1,81 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Measures RMS contrast, the standard deviation of luma over the whole image scaled to 0 to 1.
+ */
+public class ContrastMetric implements ImageMetric<Double> {
+
+    /**
+     * Default RMS contrast below which an image is considered flat.
+     */
+    public static final double DEFAULT_MIN_CONTRAST = 0.08;
+
+    private final double minContrast;
+
+    public ContrastMetric() {
+        this(DEFAULT_MIN_CONTRAST);
+    }
+
+    /**
+     * @param minContrast RMS contrast below which an image is considered flat
+     */
+    public ContrastMetric(double minContrast) {
+        this.minContrast = minContrast;
+    }
+
+    public double getMinContrast() {
+        return minContrast;
+    }
+
+    public boolean isFlat(double contrast) {
+        return contrast < minContrast;
+    }
+
+    @Override
+    public Accumulator<Double> newAccumulator(int width, int height) {
+        return new DeviationAccumulator(width);
+    }
+
+    private static class DeviationAccumulator implements Accumulator<Double> {
+        private final int width;
+        private long count;
+        private long sum;
+        private long sumOfSquares;
+
+        DeviationAccumulator(int width) {
+            this.width = width;
+        }
+
+        @Override
+        public void addRow(byte[] data, int y, int row, int above, int below) {
+            long sum = 0;
+            long sumOfSquares = 0;
+            for (int i = row, end = row + width; i < end; i++) {
+                int luma = data[i] & 0xFF;
+                sum += luma;
+                sumOfSquares += luma * luma;
+            }
+            this.count += width;
+            this.sum += sum;
+            this.sumOfSquares += sumOfSquares;
+        }
+
+        @Override
+        public void merge(Accumulator<Double> other) {
+            DeviationAccumulator band = (DeviationAccumulator) other;
+            count += band.count;
+            sum += band.sum;
+            sumOfSquares += band.sumOfSquares;
+        }
+
+        @Override
+        public Double result() {
+            if (count == 0) {
+                return 0.0;
+            }
+            double mean = sum / (double) count;
+            double variance = Math.max(0, sumOfSquares / (double) count - mean * mean);
+            return Math.sqrt(variance) / 255;
+        }
+    }
+}
@@ -0,0 +1,582 @@
+package com.bishwajeet.imagecompressor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Estimates the sharpness of a baseline JPEG from its quantized DCT coefficients. The entropy-coded data is
+ * Huffman decoded up to the coefficients of every luma block and nothing further: there is no inverse DCT, no
+ * colour conversion and no pixel buffer.
+ * <p>
+ * Blur removes high spatial frequencies first, so the score is the share of dequantized AC energy in the high
+ * frequencies (zig-zag index 10 and up, {@code u + v >= 4}) relative to the lowest ones (index 1 to 5,
+ * {@code u + v <= 2}), summed over the blocks that hold any detail at all. Flat blocks such as sky are skipped so
+ * that they do not make a sharp photo look blurry.
+ * <p>
+ * The ratio follows the shape of the spectrum rather than its level. It falls steadily under a smooth low-pass such
+ * as defocus, but a box kernel's side lobes pass some high frequencies again as it widens, and a texture of a
+ * single frequency keeps its ratio until it is filtered out entirely.
+ * <p>
+ * Progressive and arithmetic-coded files are not supported. Instances are not thread-safe; {@link #get()}
+ * returns one per thread.
+ */
+class DctBlurEstimator {
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_DQT = 0xDB;
+    private static final int MARKER_DRI = 0xDD;
+    private static final int MARKER_DHT = 0xC4;
+    private static final int MARKER_SOF0 = 0xC0;
+    private static final int MARKER_SOF1 = 0xC1;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+
+    /**
+     * Default energy ratio below which an image is considered blurry.
+     */
+    static final double DEFAULT_THRESHOLD = 0.05;
+
+    // zig-zag bands compared by the score
+    private static final int LOW_BAND_END = 5;
+    private static final int HIGH_BAND_START = 10;
+
+    // blocks whose low band energy is below this, an AC amplitude of about 20, carry no detail to judge
+    private static final double MIN_BLOCK_ENERGY = 400;
+
+    // number of detailed blocks from which the score is trusted fully
+    private static final int MIN_ACTIVE_BLOCKS = 256;
+
+    // a score this many times above or below the threshold is scored with full confidence
+    private static final double CONFIDENCE_RANGE = 4;
+
+    // largest DC difference category, reached by 12-bit extended sequential files
+    private static final int MAX_DC_SIZE = 15;
+
+    private static final int LOOKAHEAD = 9;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<DctBlurEstimator> sEstimators = new ThreadLocal<DctBlurEstimator>() {
+        @Override
+        protected DctBlurEstimator initialValue() {
+            return new DctBlurEstimator();
+        }
+    };
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private InputStream in;
+    private int bufferPosition;
+    private int bufferLimit;
+
+    private final int[][] quantTables = new int[4][64];
+    private final HuffmanTable[] dcTables = new HuffmanTable[4];
+    private final HuffmanTable[] acTables = new HuffmanTable[4];
+    private final int[] counts = new int[17];
+
+    // frame header
+    private boolean frameRead;
+    private int width;
+    private int height;
+    private int componentCount;
+    private final int[] componentIds = new int[4];
+    private final int[] hSamples = new int[4];
+    private final int[] vSamples = new int[4];
+    private final int[] quantSelectors = new int[4];
+    private int maxH;
+    private int maxV;
+    private int restartInterval;
+
+    // current scan
+    private int scanCount;
+    private final int[] scanComponents = new int[4];
+    private final int[] scanDcTables = new int[4];
+    private final int[] scanAcTables = new int[4];
+
+    // entropy decoder state
+    private long bits;
+    private int bitCount;
+    private int pendingMarker;
+
+    // luma statistics
+    private double lowEnergy;
+    private double highEnergy;
+    private double maxHighEnergy;
+    private int activeBlocks;
+
+    private DctBlurEstimator() {
+        for (int i = 0; i < 4; i++) {
+            dcTables[i] = new HuffmanTable();
+            acTables[i] = new HuffmanTable();
+        }
+    }
+
+    static DctBlurEstimator get() {
+        return sEstimators.get();
+    }
+
+    /**
+     * Scores the JPEG read from the current position of the stream. Reading stops once every luma block has been
+     * seen.
+     *
+     * @param in        the encoded image; it is not closed
+     * @param threshold energy ratio below which the image is considered blurry
+     * @return the score, or null if the stream is not a baseline Huffman-coded JPEG
+     */
+    BlurScore estimate(InputStream in, double threshold) throws IOException {
+        reset(in);
+        try {
+            if (readByte() != 0xFF || readByte() != MARKER_SOI) {
+                return null;
+            }
+            while (true) {
+                int marker = nextMarker();
+                if (marker == MARKER_SOF0 || marker == MARKER_SOF1) {
+                    readFrame();
+                } else if (isStartOfFrame(marker)) {
+                    // progressive, lossless or arithmetic coded
+                    return null;
+                } else if (marker == MARKER_DHT) {
+                    readHuffmanTables();
+                } else if (marker == MARKER_DQT) {
+                    readQuantTables();
+                } else if (marker == MARKER_DRI) {
+                    readUnsignedShort();
+                    restartInterval = readUnsignedShort();
+                } else if (marker == MARKER_SOS) {
+                    if (!frameRead) {
+                        return null;
+                    }
+                    if (readScan()) {
+                        return result(threshold);
+                    }
+                } else if (marker == MARKER_EOI) {
+                    return null;
+                } else if (marker != 0x01 && (marker < MARKER_RST0 || marker > MARKER_RST7)) {
+                    skip(readUnsignedShort() - 2);
+                }
+            }
+        } finally {
+            this.in = null;
+        }
+    }
+
+    private void reset(InputStream in) {
+        this.in = in;
+        bufferPosition = 0;
+        bufferLimit = 0;
+        frameRead = false;
+        restartInterval = 0;
+        pendingMarker = -1;
+        lowEnergy = 0;
+        highEnergy = 0;
+        maxHighEnergy = 0;
+        activeBlocks = 0;
+        for (int i = 0; i < 4; i++) {
+            dcTables[i].defined = false;
+            acTables[i].defined = false;
+        }
+    }
+
+    private BlurScore result(double threshold) {
+        double score = lowEnergy > 0 ? highEnergy / lowEnergy : 0;
+        double confidence = score > 0
+                ? Math.min(1, Math.abs(Math.log(score / threshold)) / Math.log(CONFIDENCE_RANGE)) : 0;
+        confidence *= Math.min(1, activeBlocks / (double) MIN_ACTIVE_BLOCKS);
+        return new BlurScore(score, Math.sqrt(maxHighEnergy), confidence, score < threshold);
+    }
+
+    private void readFrame() throws IOException {
+        readUnsignedShort();
+        readByte();
+        height = readUnsignedShort();
+        width = readUnsignedShort();
+        componentCount = readByte();
+        if (componentCount < 1 || componentCount > 4 || width == 0 || height == 0) {
+            throw new IOException("Unsupported frame header");
+        }
+        maxH = 1;
+        maxV = 1;
+        for (int i = 0; i < componentCount; i++) {
+            componentIds[i] = readByte();
+            int sampling = readByte();
+            hSamples[i] = Math.max(1, sampling >> 4);
+            vSamples[i] = Math.max(1, sampling & 0x0F);
+            quantSelectors[i] = readByte() & 3;
+            maxH = Math.max(maxH, hSamples[i]);
+            maxV = Math.max(maxV, vSamples[i]);
+        }
+        frameRead = true;
+    }
+
+    private void readQuantTables() throws IOException {
+        int length = readUnsignedShort() - 2;
+        while (length > 0) {
+            int info = readByte();
+            int[] table = quantTables[info & 3];
+            boolean wide = (info >> 4) != 0;
+            // stored in zig-zag order, which is the order coefficients are decoded in
+            for (int i = 0; i < 64; i++) {
+                table[i] = wide ? readUnsignedShort() : readByte();
+            }
+            length -= 1 + (wide ? 128 : 64);
+        }
+    }
+
+    private void readHuffmanTables() throws IOException {
+        int length = readUnsignedShort() - 2;
+        while (length > 0) {
+            int info = readByte();
+            HuffmanTable table = (info >> 4) == 0 ? dcTables[info & 3] : acTables[info & 3];
+            int total = 0;
+            for (int i = 1; i <= 16; i++) {
+                counts[i] = readByte();
+                total += counts[i];
+            }
+            if (total > 256) {
+                throw new IOException("Invalid Huffman table");
+            }
+            for (int i = 0; i < total; i++) {
+                table.values[i] = (byte) readByte();
+            }
+            table.build(counts);
+            length -= 17 + total;
+        }
+    }
+
+    /**
+     * Decodes one scan.
+     *
+     * @return whether the scan held the luma component, after which nothing more is needed
+     */
+    private boolean readScan() throws IOException {
+        readUnsignedShort();
+        scanCount = readByte();
+        if (scanCount < 1 || scanCount > 4) {
+            throw new IOException("Invalid scan header");
+        }
+        boolean hasLuma = false;
+        for (int i = 0; i < scanCount; i++) {
+            int id = readByte();
+            int selectors = readByte();
+            int component = -1;
+            for (int c = 0; c < componentCount; c++) {
+                if (componentIds[c] == id) {
+                    component = c;
+                }
+            }
+            if (component < 0) {
+                throw new IOException("Scan refers to unknown component " + id);
+            }
+            scanComponents[i] = component;
+            scanDcTables[i] = (selectors >> 4) & 3;
+            scanAcTables[i] = selectors & 3;
+            hasLuma |= component == 0;
+            if (!dcTables[scanDcTables[i]].defined || !acTables[scanAcTables[i]].defined) {
+                throw new IOException("Scan uses an undefined Huffman table");
+            }
+        }
+        // spectral selection and successive approximation are fixed for baseline
+        skip(3);
+
+        bits = 0;
+        bitCount = 0;
+        pendingMarker = -1;
+
+        int mcusX;
+        int mcusY;
+        if (scanCount == 1) {
+            int component = scanComponents[0];
+            int componentWidth = (width * hSamples[component] + maxH - 1) / maxH;
+            int componentHeight = (height * vSamples[component] + maxV - 1) / maxV;
+            mcusX = (componentWidth + 7) / 8;
+            mcusY = (componentHeight + 7) / 8;
+        } else {
+            mcusX = (width + 8 * maxH - 1) / (8 * maxH);
+            mcusY = (height + 8 * maxV - 1) / (8 * maxV);
+        }
+
+        int mcu = 0;
+        for (int y = 0; y < mcusY; y++) {
+            CompressionExecutor.throwIfCancelled();
+            for (int x = 0; x < mcusX; x++, mcu++) {
+                if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                    restart();
+                }
+                if (!decodeMcu()) {
+                    // corrupt or truncated data, score what has been read
+                    return hasLuma;
+                }
+            }
+        }
+        if (!hasLuma) {
+            skipToMarker();
+        }
+        return hasLuma;
+    }
+
+    private boolean decodeMcu() throws IOException {
+        for (int i = 0; i < scanCount; i++) {
+            int component = scanComponents[i];
+            int blocks = scanCount == 1 ? 1 : hSamples[component] * vSamples[component];
+            HuffmanTable dc = dcTables[scanDcTables[i]];
+            HuffmanTable ac = acTables[scanAcTables[i]];
+            int[] quant = component == 0 ? quantTables[quantSelectors[0]] : null;
+            for (int b = 0; b < blocks; b++) {
+                if (!decodeBlock(dc, ac, quant)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the coefficients of one block and, for luma blocks, adds up their energy.
+     *
+     * @param quant the quantization table of a luma block, or null to only skip over the block
+     * @return false if the data is corrupt
+     */
+    private boolean decodeBlock(HuffmanTable dc, HuffmanTable ac, int[] quant) throws IOException {
+        int size = decode(dc);
+        if (size < 0 || size > MAX_DC_SIZE) {
+            return false;
+        }
+        // the DC difference is not needed, only skipped
+        skipBits(size);
+
+        double low = 0;
+        double high = 0;
+        int k = 1;
+        while (k < 64) {
+            int symbol = decode(ac);
+            if (symbol < 0) {
+                return false;
+            }
+            int run = symbol >> 4;
+            size = symbol & 0x0F;
+            if (size == 0) {
+                if (run != 15) {
+                    break;
+                }
+                k += 16;
+                continue;
+            }
+            k += run;
+            if (k > 63) {
+                return false;
+            }
+            int coefficient = receiveExtend(size);
+            if (quant != null && (k <= LOW_BAND_END || k >= HIGH_BAND_START)) {
+                double value = coefficient * quant[k];
+                if (k <= LOW_BAND_END) {
+                    low += value * value;
+                } else {
+                    high += value * value;
+                }
+            }
+            k++;
+        }
+
+        if (quant != null && low >= MIN_BLOCK_ENERGY) {
+            lowEnergy += low;
+            highEnergy += high;
+            maxHighEnergy = Math.max(maxHighEnergy, high);
+            activeBlocks++;
+        }
+        return true;
+    }
+
+    private int decode(HuffmanTable table) throws IOException {
+        fillBits();
+        int peek = (int) (bits >>> (bitCount - LOOKAHEAD)) & ((1 << LOOKAHEAD) - 1);
+        int entry = table.lookup[peek];
+        if (entry != 0) {
+            bitCount -= entry >> 8;
+            return entry & 0xFF;
+        }
+        for (int length = LOOKAHEAD + 1; length <= 16; length++) {
+            int code = (int) (bits >>> (bitCount - length)) & ((1 << length) - 1);
+            if (code <= table.maxCode[length]) {
+                bitCount -= length;
+                return table.values[code + table.valueOffsets[length]] & 0xFF;
+            }
+        }
+        return -1;
+    }
+
+    private int receiveExtend(int size) throws IOException {
+        fillBits();
+        int value = (int) (bits >>> (bitCount - size)) & ((1 << size) - 1);
+        bitCount -= size;
+        return value < 1 << (size - 1) ? value - (1 << size) + 1 : value;
+    }
+
+    private void skipBits(int count) throws IOException {
+        fillBits();
+        bitCount -= count;
+    }
+
+    // tops the bit buffer up to at least 16 bits; past a marker the data reads as zeros
+    private void fillBits() throws IOException {
+        while (bitCount <= 56 - 8) {
+            int b = 0;
+            if (pendingMarker < 0) {
+                b = readByte();
+                if (b == 0xFF) {
+                    int next = readByte();
+                    while (next == 0xFF) {
+                        next = readByte();
+                    }
+                    if (next != 0) {
+                        pendingMarker = next < 0 ? MARKER_EOI : next;
+                        b = 0;
+                    }
+                } else if (b < 0) {
+                    pendingMarker = MARKER_EOI;
+                    b = 0;
+                }
+            }
+            bits = (bits << 8) | b;
+            bitCount += 8;
+        }
+    }
+
+    private void restart() throws IOException {
+        bits = 0;
+        bitCount = 0;
+        if (pendingMarker < 0) {
+            skipToMarker();
+        }
+        if (pendingMarker >= MARKER_RST0 && pendingMarker <= MARKER_RST7) {
+            pendingMarker = -1;
+        }
+    }
+
+    // scans the rest of the entropy-coded data for the next marker
+    private void skipToMarker() throws IOException {
+        while (pendingMarker < 0) {
+            int b = readByte();
+            if (b < 0) {
+                pendingMarker = MARKER_EOI;
+            } else if (b == 0xFF) {
+                int next = readByte();
+                while (next == 0xFF) {
+                    next = readByte();
+                }
+                if (next != 0) {
+                    pendingMarker = next < 0 ? MARKER_EOI : next;
+                }
+            }
+        }
+    }
+
+    private int nextMarker() throws IOException {
+        if (pendingMarker >= 0) {
+            int marker = pendingMarker;
+            pendingMarker = -1;
+            return marker;
+        }
+        int b = readByte();
+        while (b != 0xFF) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            b = readByte();
+        }
+        // any number of fill bytes may precede a marker
+        while (b == 0xFF) {
+            b = readByte();
+        }
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != MARKER_DHT && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * @return the next byte, or -1 at the end of the stream
+     */
+    private int readByte() throws IOException {
+        if (bufferPosition == bufferLimit) {
+            bufferLimit = in.read(buffer, 0, buffer.length);
+            bufferPosition = 0;
+            if (bufferLimit <= 0) {
+                bufferLimit = 0;
+                return -1;
+            }
+        }
+        return buffer[bufferPosition++] & 0xFF;
+    }
+
+    private int readUnsignedShort() throws IOException {
+        int high = readByte();
+        int low = readByte();
+        if ((high | low) < 0) {
+            throw new EOFException();
+        }
+        return (high << 8) | low;
+    }
+
+    private void skip(int count) throws IOException {
+        while (count > 0) {
+            if (bufferPosition == bufferLimit) {
+                if (readByte() < 0) {
+                    throw new EOFException();
+                }
+                count--;
+                continue;
+            }
+            int skipped = Math.min(count, bufferLimit - bufferPosition);
+            bufferPosition += skipped;
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Canonical Huffman table with a direct lookup for codes of up to {@link #LOOKAHEAD} bits.
+     */
+    private static final class HuffmanTable {
+        // code length << 8 | symbol, 0 for codes longer than the lookahead
+        final int[] lookup = new int[1 << LOOKAHEAD];
+        final int[] maxCode = new int[17];
+        final int[] valueOffsets = new int[17];
+        final byte[] values = new byte[256];
+        boolean defined;
+
+        /**
+         * @throws IOException if the code lengths overflow their bit widths, which would index past the tables
+         */
+        void build(int[] counts) throws IOException {
+            Arrays.fill(lookup, 0);
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= 16; length++) {
+                // the codes must fit in the length, and none may be all ones
+                if (code + counts[length] >= 1 << length) {
+                    throw new IOException("Invalid Huffman table");
+                }
+                valueOffsets[length] = index - code;
+                for (int i = 0; i < counts[length]; i++) {
+                    if (length <= LOOKAHEAD) {
+                        int shift = LOOKAHEAD - length;
+                        int entry = length << 8 | (values[index] & 0xFF);
+                        for (int fill = code << shift, end = (code + 1) << shift; fill < end; fill++) {
+                            lookup[fill] = entry;
+                        }
+                    }
+                    code++;
+                    index++;
+                }
+                maxCode[length] = counts[length] > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+            defined = true;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Plans a decode that produces a bitmap of an exact target size without a separate scaling pass.
+ * <p>
+ * The decoder first sub-samples by a power of two, which it can do while decoding, and then scales by
+ * {@code inTargetDensity / inDensity} when {@code inScaled} is set. The planner picks the largest sample size that
+ * keeps the sampled image at least as large as the target, and a density pair that the decoder maps onto the
+ * target size. The decoder rounds the scaled size with float arithmetic, which the planner repeats, so a plan is
+ * only marked exact when both output dimensions match the target.
+ * <p>
+ * The class has no Android dependencies.
+ */
+final class DecodePlanner {
+
+    /**
+     * Decode parameters for one image.
+     */
+    static final class Plan {
+        /**
+         * Power of two for {@code inSampleSize}.
+         */
+        final int sampleSize;
+        /**
+         * Values for {@code inDensity} and {@code inTargetDensity}, both 0 when the decoder should not scale.
+         */
+        final int density;
+        final int targetDensity;
+        /**
+         * Size of the bitmap the decoder is expected to return.
+         */
+        final int width;
+        final int height;
+        /**
+         * Whether the expected size is the target size.
+         */
+        final boolean exact;
+
+        Plan(int sampleSize, int density, int targetDensity, int width, int height, boolean exact) {
+            this.sampleSize = sampleSize;
+            this.density = density;
+            this.targetDensity = targetDensity;
+            this.width = width;
+            this.height = height;
+            this.exact = exact;
+        }
+
+        boolean isScaled() {
+            return density != 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Plan[sampleSize=" + sampleSize + ", density=" + density + "->" + targetDensity + ", size="
+                    + width + "x" + height + (exact ? ", exact" : "") + "]";
+        }
+    }
+
+    // ARGB_8888
+    private static final int BYTES_PER_PIXEL = 4;
+
+    // density used when the scale cannot be expressed as the ratio of a sampled side to a target side; at 2^24
+    // the decoder's float arithmetic, not the density, limits the precision, and as the plan never enlarges the
+    // target density stays below it
+    private static final int FINE_DENSITY = 1 << 24;
+
+    private DecodePlanner() {
+    }
+
+    /**
+     * Plans the decode of a {@code sourceWidth} x {@code sourceHeight} image to {@code targetWidth} x
+     * {@code targetHeight}. When no density pair maps the sampled image exactly onto the target, the plan only
+     * sub-samples and the caller has to scale the rest of the way.
+     */
+    static Plan plan(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int sampleSize = sampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight);
+        int sampledWidth = sampledSize(sourceWidth, sampleSize);
+        int sampledHeight = sampledSize(sourceHeight, sampleSize);
+
+        if (sampledWidth == targetWidth && sampledHeight == targetHeight) {
+            return new Plan(sampleSize, 0, 0, sampledWidth, sampledHeight, true);
+        }
+
+//      the ratio of the longer side is the more precise one; the other side is tried when it rounds differently
+        boolean widthFirst = sampledWidth >= sampledHeight;
+        int[][] candidates = {
+                widthFirst ? new int[]{sampledWidth, targetWidth} : new int[]{sampledHeight, targetHeight},
+                widthFirst ? new int[]{sampledHeight, targetHeight} : new int[]{sampledWidth, targetWidth}};
+        for (int[] candidate : candidates) {
+            int density = candidate[0];
+            int targetDensity = candidate[1];
+            if (scaledSize(sampledWidth, density, targetDensity) == targetWidth
+                    && scaledSize(sampledHeight, density, targetDensity) == targetHeight) {
+                return new Plan(sampleSize, density, targetDensity, targetWidth, targetHeight, true);
+            }
+        }
+
+//      otherwise take the middle of the range of scales that round to the target on both axes
+        double low = Math.max((targetWidth - 0.5) / sampledWidth, (targetHeight - 0.5) / sampledHeight);
+        double high = Math.min((targetWidth + 0.5) / sampledWidth, (targetHeight + 0.5) / sampledHeight);
+        if (low < high) {
+            int targetDensity = (int) Math.round((low + high) / 2 * FINE_DENSITY);
+            if (scaledSize(sampledWidth, FINE_DENSITY, targetDensity) == targetWidth
+                    && scaledSize(sampledHeight, FINE_DENSITY, targetDensity) == targetHeight) {
+                return new Plan(sampleSize, FINE_DENSITY, targetDensity, targetWidth, targetHeight, true);
+            }
+        }
+        return new Plan(sampleSize, 0, 0, sampledWidth, sampledHeight, false);
+    }
+
+    /**
+     * Pixel memory held at the peak of a decode to the plan. A decode that already has the target size and needs
+     * no rotation is the output itself; otherwise the decoded bitmap is drawn into an output bitmap of the target
+     * size, and both are live during the draw.
+     *
+     * @param rotated whether the EXIF orientation requires turning the decoded pixels
+     */
+    static long peakBytes(Plan plan, int targetWidth, int targetHeight, boolean rotated) {
+        long decodedBytes = (long) plan.width * plan.height * BYTES_PER_PIXEL;
+        if (plan.exact && !rotated) {
+            return decodedBytes;
+        }
+        return decodedBytes + (long) targetWidth * targetHeight * BYTES_PER_PIXEL;
+    }
+
+    /**
+     * Pixel memory held at the peak of a decode that is only sub-sampled and then scaled by {@link Resampler}.
+     * While it resizes, the decoded bitmap and the scaled one are live along with a pixel array copy of each and
+     * the intermediate plane of the horizontal pass; turning the result upright takes one more bitmap of the target
+     * size, once the arrays are gone.
+     *
+     * @param rotated whether the EXIF orientation requires turning the decoded pixels
+     */
+    static long resampledPeakBytes(int sampledWidth, int sampledHeight, int targetWidth, int targetHeight,
+                                   boolean rotated) {
+        long decodedBytes = (long) sampledWidth * sampledHeight * BYTES_PER_PIXEL;
+        if (sampledWidth == targetWidth && sampledHeight == targetHeight && !rotated) {
+            return decodedBytes;
+        }
+        long targetBytes = (long) targetWidth * targetHeight * BYTES_PER_PIXEL;
+        long intermediateBytes = (long) targetWidth * sampledHeight * BYTES_PER_PIXEL;
+        long resizing = 2 * decodedBytes + intermediateBytes + 2 * targetBytes;
+        long rotating = rotated ? decodedBytes + 2 * targetBytes : 0;
+        return Math.max(resizing, rotating);
+    }
+
+    /**
+     * Largest power of two sample size that still leaves at least the target resolution on both axes.
+     */
+    static int sampleSize(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (sampledSize(sourceWidth, sampleSize * 2) >= targetWidth
+                && sampledSize(sourceHeight, sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Size of one side after sub-sampling, rounded up as the JPEG decoder does.
+     */
+    static int sampledSize(int size, int sampleSize) {
+        return (size + sampleSize - 1) / sampleSize;
+    }
+
+    /**
+     * Size of one side after density scaling, computed the way {@code BitmapFactory} does.
+     */
+    static int scaledSize(int size, int density, int targetDensity) {
+        float scale = targetDensity / (float) density;
+        return (int) (size * scale + 0.5f);
+    }
+}
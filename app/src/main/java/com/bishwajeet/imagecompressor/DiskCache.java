@@ -0,0 +1,313 @@
+package com.bishwajeet.imagecompressor;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache of compressed images on disk. Every entry is one file named after its key; the least
+ * recently used entries are deleted once the total size exceeds the limit. Operations are appended to a journal
+ * that is replayed when the cache is first used, so the contents and the LRU order survive restarts.
+ * <p>
+ * Journal lines are {@code PUT <key> <size>}, {@code GET <key>} and {@code DEL <key>}. The journal is rewritten
+ * from the live entries once it holds more redundant lines than entries.
+ */
+class DiskCache {
+    private static final String LOG_TAG = DiskCache.class.getSimpleName();
+
+    private static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+    private static final String MAGIC = "SiliCompressor.DiskCache";
+    private static final String VERSION = "1";
+    private static final String PUT = "PUT";
+    private static final String GET = "GET";
+    private static final String DEL = "DEL";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MIN_REDUNDANT_OPS_TO_COMPACT = 1000;
+
+    private final File directory;
+    private final long maxBytes;
+
+    // access-ordered, guarded by this
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private int redundantOps;
+    private Writer journal;
+
+    private long hitCount;
+    private long missCount;
+
+    DiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cached file for the key, or null if there is none
+     */
+    synchronized File get(String key) {
+        Long length = open() ? entries.get(key) : null;
+        if (length == null) {
+            missCount++;
+            return null;
+        }
+        File file = entryFile(key);
+        if (!file.exists()) {
+            entries.remove(key);
+            size -= length;
+            redundantOps += 2;
+            append(DEL, key);
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        redundantOps++;
+        append(GET, key);
+        return file;
+    }
+
+    /**
+     * Stores the encoded bytes under the key, replacing any previous entry.
+     *
+     * @return the cached file, or null if it could not be written
+     */
+    File put(String key, ByteSink data) {
+        if (!isValidKey(key)) {
+            throw new IllegalArgumentException("Invalid cache key " + key);
+        }
+        File temp;
+        synchronized (this) {
+            if (!open()) {
+                return null;
+            }
+            temp = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+        }
+
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            data.writeTo(out);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to write cache entry " + key, e);
+            temp.delete();
+            return null;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        synchronized (this) {
+            File file = entryFile(key);
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return null;
+            }
+            Long previous = entries.put(key, (long) data.size());
+            if (previous != null) {
+                size -= previous;
+                redundantOps++;
+            }
+            size += data.size();
+            append(PUT, key + " " + data.size());
+            trimToSize();
+            return entries.containsKey(key) ? file : null;
+        }
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    long getMaxSize() {
+        return maxBytes;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Keys are used as file names, so they are limited to lower case letters, digits, '-' and '_'.
+     */
+    static boolean isValidKey(String key) {
+        if (key.isEmpty() || key.length() > 120) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private File entryFile(String key) {
+        return new File(directory, key);
+    }
+
+    private boolean open() {
+        if (journal != null) {
+            return true;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(LOG_TAG, "Unable to create " + directory);
+            return false;
+        }
+        try {
+            File journalFile = new File(directory, JOURNAL_FILE);
+            if (journalFile.exists()) {
+                readJournal(journalFile);
+                journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), UTF_8));
+                trimToSize();
+            } else {
+                rebuildJournal();
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to open " + directory + ", starting empty", e);
+            entries.clear();
+            size = 0;
+            deleteContents();
+            try {
+                rebuildJournal();
+                return true;
+            } catch (IOException retry) {
+                Log.w(LOG_TAG, "Unable to create journal in " + directory, retry);
+                return false;
+            }
+        }
+    }
+
+    private void readJournal(File journalFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), UTF_8));
+        try {
+            if (!MAGIC.equals(reader.readLine()) || !VERSION.equals(reader.readLine())) {
+                throw new IOException("Unexpected journal header");
+            }
+            int lines = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                String[] parts = line.split(" ");
+                if (parts.length < 2) {
+                    // a torn last line from a crash, everything before it is still valid
+                    continue;
+                }
+                String key = parts[1];
+                if (PUT.equals(parts[0]) && parts.length == 3) {
+                    long length = Long.parseLong(parts[2]);
+                    Long previous = entries.put(key, length);
+                    size += length - (previous != null ? previous : 0);
+                } else if (GET.equals(parts[0])) {
+                    entries.get(key);
+                } else if (DEL.equals(parts[0])) {
+                    Long removed = entries.remove(key);
+                    if (removed != null) {
+                        size -= removed;
+                    }
+                }
+            }
+            redundantOps = lines - entries.size();
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt journal", e);
+        } finally {
+            reader.close();
+        }
+
+//      entries whose file went missing are dropped, as are writes interrupted before their rename
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (!entryFile(entry.getKey()).exists()) {
+                size -= entry.getValue();
+                iterator.remove();
+            }
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private void rebuildJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        File temp = new File(directory, JOURNAL_FILE_TEMP);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), UTF_8));
+        try {
+            writer.write(MAGIC + "\n" + VERSION + "\n");
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(PUT + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        File journalFile = new File(directory, JOURNAL_FILE);
+        if (!temp.renameTo(journalFile)) {
+            throw new IOException("Unable to replace " + journalFile);
+        }
+        journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), UTF_8));
+        redundantOps = 0;
+    }
+
+    private void append(String op, String arguments) {
+        try {
+            journal.write(op + " " + arguments + "\n");
+            journal.flush();
+            if (redundantOps >= MIN_REDUNDANT_OPS_TO_COMPACT && redundantOps >= entries.size()) {
+                rebuildJournal();
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to write journal", e);
+        }
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.getValue();
+            entryFile(eldest.getKey()).delete();
+            redundantOps += 2;
+            append(DEL, eldest.getKey());
+        }
+    }
+
+    private void deleteContents() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
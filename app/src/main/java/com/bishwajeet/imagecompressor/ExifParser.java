@@ -0,0 +1,270 @@
+package com.bishwajeet.imagecompressor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Minimal JPEG header reader. It walks the marker segments up to the first frame header, parses the TIFF structure
+ * of the EXIF APP1 segment in place and stops before any entropy-coded data, so only the header of the file is
+ * read. Segments are parsed out of a buffer that is reused between calls; no objects are allocated per tag.
+ * <p>
+ * Instances are not thread-safe; {@link #get()} returns one per thread.
+ */
+class ExifParser {
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP1 = 0xE1;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+    private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_LONG = 4;
+
+    // ExifInterface.ORIENTATION_NORMAL to ORIENTATION_ROTATE_270, kept here so that the parser needs no Android class
+    private static final int MIN_ORIENTATION = 1;
+    private static final int MAX_ORIENTATION = 8;
+
+    // "Exif\0\0" followed by the TIFF header
+    private static final int EXIF_HEADER_LENGTH = 6;
+
+    // an APP1 segment can never be longer than this
+    private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+
+    private static final ThreadLocal<ExifParser> sParsers = new ThreadLocal<ExifParser>() {
+        @Override
+        protected ExifParser initialValue() {
+            return new ExifParser();
+        }
+    };
+
+    private final byte[] buffer = new byte[MAX_SEGMENT_LENGTH];
+    private boolean littleEndian;
+    private long position;
+
+    static ExifParser get() {
+        return sParsers.get();
+    }
+
+    /**
+     * Reads the header of the image from the current position of the stream into {@code header}. For anything
+     * that is not a JPEG only {@link ImageHeader#jpeg} is set and the size is left unknown.
+     *
+     * @param in     stream positioned at the start of the encoded image; it is not closed
+     * @param header receives the result
+     */
+    void parse(InputStream in, ImageHeader header) throws IOException {
+        header.reset();
+        position = 0;
+
+        if (readByte(in) != 0xFF || readByte(in) != MARKER_SOI) {
+            return;
+        }
+        header.jpeg = true;
+
+        boolean exifParsed = false;
+        while (true) {
+            int marker = readByte(in);
+            if (marker != 0xFF) {
+                return;
+            }
+            // any number of fill bytes may precede a marker
+            while (marker == 0xFF) {
+                marker = readByte(in);
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+
+            int length = readUnsignedShortBigEndian(in) - 2;
+            if (length < 0) {
+                return;
+            }
+            long segmentStart = position;
+
+            if (isStartOfFrame(marker)) {
+                readFully(in, buffer, 5);
+                header.height = ((buffer[1] & 0xFF) << 8) | (buffer[2] & 0xFF);
+                header.width = ((buffer[3] & 0xFF) << 8) | (buffer[4] & 0xFF);
+                return;
+            }
+            if (marker == MARKER_APP1 && !exifParsed) {
+                readFully(in, buffer, length);
+                exifParsed = parseExif(length, segmentStart, header);
+                continue;
+            }
+            skipFully(in, length);
+        }
+    }
+
+    /**
+     * @return true if the buffered segment is an EXIF segment, false for other APP1 payloads such as XMP
+     */
+    private boolean parseExif(int length, long segmentStart, ImageHeader header) {
+        if (length < EXIF_HEADER_LENGTH + 8 || buffer[0] != 'E' || buffer[1] != 'x' || buffer[2] != 'i'
+                || buffer[3] != 'f' || buffer[4] != 0 || buffer[5] != 0) {
+            return false;
+        }
+
+        int tiff = EXIF_HEADER_LENGTH;
+        if (buffer[tiff] == 'I' && buffer[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (buffer[tiff] == 'M' && buffer[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return true;
+        }
+        if (readShort(tiff + 2) != 42) {
+            return true;
+        }
+
+        // IFD0 holds the orientation, the IFD linked after it describes the thumbnail
+        int ifd0 = tiff + readInt(tiff + 4);
+        int next = parseIfd(ifd0, tiff, length, header, false);
+        if (next > 0) {
+            parseIfd(tiff + next, tiff, length, header, true);
+        }
+
+        if (header.thumbnailOffset >= 0) {
+            long end = header.thumbnailOffset + header.thumbnailLength;
+            if (header.thumbnailLength <= 0 || end > length - tiff) {
+                header.thumbnailOffset = -1;
+                header.thumbnailLength = 0;
+            } else {
+                parseThumbnailSize(tiff + (int) header.thumbnailOffset, tiff + (int) end, header);
+                header.thumbnailOffset += segmentStart + tiff;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the offset of the next IFD relative to the TIFF header, or 0 if there is none
+     */
+    private int parseIfd(int ifd, int tiff, int length, ImageHeader header, boolean thumbnail) {
+        if (ifd < tiff || ifd + 2 > length) {
+            return 0;
+        }
+        int count = readShort(ifd);
+        int entry = ifd + 2;
+        if (entry + count * 12 + 4 > length) {
+            return 0;
+        }
+
+        for (int i = 0; i < count; i++, entry += 12) {
+            int tag = readShort(entry);
+            int type = readShort(entry + 2);
+            int value;
+            if (type == TYPE_SHORT) {
+                value = readShort(entry + 8);
+            } else if (type == TYPE_LONG) {
+                value = readInt(entry + 8);
+            } else {
+                continue;
+            }
+
+            if (!thumbnail && tag == TAG_ORIENTATION) {
+//              anything else is not an orientation and leaves the image as it is stored
+                if (value >= MIN_ORIENTATION && value <= MAX_ORIENTATION) {
+                    header.orientation = value;
+                }
+            } else if (thumbnail && tag == TAG_THUMBNAIL_OFFSET) {
+                header.thumbnailOffset = value & 0xFFFFFFFFL;
+            } else if (thumbnail && tag == TAG_THUMBNAIL_LENGTH) {
+                header.thumbnailLength = value;
+            }
+        }
+        return readInt(entry);
+    }
+
+    /**
+     * Reads the frame size of the thumbnail JPEG that lies in the buffer between {@code start} and {@code end}.
+     */
+    private void parseThumbnailSize(int start, int end, ImageHeader header) {
+        if (start + 4 > end || (buffer[start] & 0xFF) != 0xFF || (buffer[start + 1] & 0xFF) != MARKER_SOI) {
+            return;
+        }
+        int offset = start + 2;
+        while (offset + 4 <= end && (buffer[offset] & 0xFF) == 0xFF) {
+            int marker = buffer[offset + 1] & 0xFF;
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return;
+            }
+            int length = ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+            if (isStartOfFrame(marker)) {
+                if (offset + 9 <= end) {
+                    header.thumbnailHeight = ((buffer[offset + 5] & 0xFF) << 8) | (buffer[offset + 6] & 0xFF);
+                    header.thumbnailWidth = ((buffer[offset + 7] & 0xFF) << 8) | (buffer[offset + 8] & 0xFF);
+                }
+                return;
+            }
+            offset += 2 + length;
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private int readShort(int offset) {
+        if (littleEndian) {
+            return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+        }
+        return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+    }
+
+    private int readInt(int offset) {
+        if (littleEndian) {
+            return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8)
+                    | ((buffer[offset + 2] & 0xFF) << 16) | ((buffer[offset + 3] & 0xFF) << 24);
+        }
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    private int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        position++;
+        return b;
+    }
+
+    private int readUnsignedShortBigEndian(InputStream in) throws IOException {
+        return (readByte(in) << 8) | readByte(in);
+    }
+
+    private void readFully(InputStream in, byte[] b, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(b, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+        position += length;
+    }
+
+    private void skipFully(InputStream in, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        position += length;
+    }
+}
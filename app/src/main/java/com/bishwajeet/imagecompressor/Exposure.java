@@ -0,0 +1,66 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Brightness of an image, as measured by {@link ExposureMetric}.
+ */
+public class Exposure {
+    private final int[] histogram;
+    private final double mean;
+    private final double shadowFraction;
+    private final double highlightFraction;
+    private final boolean underexposed;
+    private final boolean overexposed;
+
+    Exposure(int[] histogram, double mean, double shadowFraction, double highlightFraction, boolean underexposed,
+             boolean overexposed) {
+        this.histogram = histogram;
+        this.mean = mean;
+        this.shadowFraction = shadowFraction;
+        this.highlightFraction = highlightFraction;
+        this.underexposed = underexposed;
+        this.overexposed = overexposed;
+    }
+
+    /**
+     * Returns the number of pixels at every luma level from 0 to 255. The array is not copied and must not be
+     * modified.
+     */
+    public int[] getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * @return mean luma, from 0 to 255
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return share of the pixels that are clipped to black, from 0 to 1
+     */
+    public double getShadowFraction() {
+        return shadowFraction;
+    }
+
+    /**
+     * @return share of the pixels that are clipped to white, from 0 to 1
+     */
+    public double getHighlightFraction() {
+        return highlightFraction;
+    }
+
+    public boolean isUnderexposed() {
+        return underexposed;
+    }
+
+    public boolean isOverexposed() {
+        return overexposed;
+    }
+
+    @Override
+    public String toString() {
+        return "Exposure[mean=" + mean + ", shadows=" + shadowFraction + ", highlights=" + highlightFraction
+                + (underexposed ? ", underexposed" : "") + (overexposed ? ", overexposed" : "") + "]";
+    }
+}
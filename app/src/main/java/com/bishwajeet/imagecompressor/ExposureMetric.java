@@ -0,0 +1,106 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Builds the luma histogram of an image and judges its exposure from the mean and the share of clipped pixels.
+ */
+public class ExposureMetric implements ImageMetric<Exposure> {
+
+    /**
+     * Default highest luma that counts as clipped to black.
+     */
+    public static final int DEFAULT_SHADOW_LEVEL = 8;
+
+    /**
+     * Default lowest luma that counts as clipped to white.
+     */
+    public static final int DEFAULT_HIGHLIGHT_LEVEL = 247;
+
+    /**
+     * Default share of clipped pixels from which an image is under- or overexposed.
+     */
+    public static final double DEFAULT_MAX_CLIPPED_FRACTION = 0.25;
+
+    // a mean this far from either end is under- or overexposed whatever the clipping
+    private static final int MIN_MEAN = 48;
+    private static final int LEVELS = 256;
+
+    private final int shadowLevel;
+    private final int highlightLevel;
+    private final double maxClippedFraction;
+
+    public ExposureMetric() {
+        this(DEFAULT_SHADOW_LEVEL, DEFAULT_HIGHLIGHT_LEVEL, DEFAULT_MAX_CLIPPED_FRACTION);
+    }
+
+    /**
+     * @param shadowLevel        highest luma that counts as clipped to black
+     * @param highlightLevel     lowest luma that counts as clipped to white
+     * @param maxClippedFraction share of clipped pixels from which an image is under- or overexposed
+     */
+    public ExposureMetric(int shadowLevel, int highlightLevel, double maxClippedFraction) {
+        if (shadowLevel < 0 || highlightLevel >= LEVELS || shadowLevel >= highlightLevel) {
+            throw new IllegalArgumentException("Shadow level must be below highlight level, both within 0 to 255.");
+        }
+        this.shadowLevel = shadowLevel;
+        this.highlightLevel = highlightLevel;
+        this.maxClippedFraction = maxClippedFraction;
+    }
+
+    @Override
+    public Accumulator<Exposure> newAccumulator(int width, int height) {
+        return new HistogramAccumulator(width);
+    }
+
+    private class HistogramAccumulator implements Accumulator<Exposure> {
+        private final int width;
+        private final int[] histogram = new int[LEVELS];
+
+        HistogramAccumulator(int width) {
+            this.width = width;
+        }
+
+        @Override
+        public void addRow(byte[] data, int y, int row, int above, int below) {
+            int[] histogram = this.histogram;
+            for (int i = row, end = row + width; i < end; i++) {
+                histogram[data[i] & 0xFF]++;
+            }
+        }
+
+        @Override
+        public void merge(Accumulator<Exposure> other) {
+            int[] counts = ((HistogramAccumulator) other).histogram;
+            for (int i = 0; i < LEVELS; i++) {
+                histogram[i] += counts[i];
+            }
+        }
+
+        @Override
+        public Exposure result() {
+            long count = 0;
+            long sum = 0;
+            long shadows = 0;
+            long highlights = 0;
+            for (int level = 0; level < LEVELS; level++) {
+                int pixels = histogram[level];
+                count += pixels;
+                sum += (long) level * pixels;
+                if (level <= shadowLevel) {
+                    shadows += pixels;
+                } else if (level >= highlightLevel) {
+                    highlights += pixels;
+                }
+            }
+            if (count == 0) {
+                return new Exposure(histogram, 0, 0, 0, false, false);
+            }
+
+            double mean = sum / (double) count;
+            double shadowFraction = shadows / (double) count;
+            double highlightFraction = highlights / (double) count;
+            return new Exposure(histogram, mean, shadowFraction, highlightFraction,
+                    mean < MIN_MEAN || shadowFraction >= maxClippedFraction,
+                    mean > LEVELS - 1 - MIN_MEAN || highlightFraction >= maxClippedFraction);
+        }
+    }
+}
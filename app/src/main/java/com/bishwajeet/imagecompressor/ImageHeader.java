@@ -0,0 +1,45 @@
+package com.bishwajeet.imagecompressor;
+
+import android.media.ExifInterface;
+
+/**
+ * What {@link ExifParser} learns from the header of an encoded image: its size, its EXIF orientation and where
+ * the embedded EXIF thumbnail is, if any.
+ */
+class ImageHeader {
+    boolean jpeg;
+    int width = -1;
+    int height = -1;
+    int orientation = ExifInterface.ORIENTATION_UNDEFINED;
+
+    // absolute offset and length of the embedded JPEG thumbnail in the source, -1 and 0 if there is none
+    long thumbnailOffset = -1;
+    int thumbnailLength;
+    int thumbnailWidth = -1;
+    int thumbnailHeight = -1;
+
+    void reset() {
+        jpeg = false;
+        width = -1;
+        height = -1;
+        orientation = ExifInterface.ORIENTATION_UNDEFINED;
+        thumbnailOffset = -1;
+        thumbnailLength = 0;
+        thumbnailWidth = -1;
+        thumbnailHeight = -1;
+    }
+
+    boolean hasSize() {
+        return width > 0 && height > 0;
+    }
+
+    boolean hasThumbnail() {
+        return thumbnailOffset >= 0 && thumbnailLength > 0 && thumbnailWidth > 0 && thumbnailHeight > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageHeader[" + width + "x" + height + ", orientation=" + orientation + ", thumbnail="
+                + thumbnailWidth + "x" + thumbnailHeight + "@" + thumbnailOffset + "+" + thumbnailLength + "]";
+    }
+}
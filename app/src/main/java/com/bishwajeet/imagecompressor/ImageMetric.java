@@ -0,0 +1,44 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * A measurement taken by a {@link MetricsEngine}. The engine streams the rows of a {@link LumaPlane} once and hands
+ * every row to the accumulators of all its metrics in turn, so a row is read from memory once for all of them.
+ * Rows are split into bands that may run in parallel; each band gets accumulators of its own, which are merged in
+ * row order at the end.
+ *
+ * @param <R> type of the result
+ */
+public interface ImageMetric<R> {
+
+    /**
+     * Creates an empty accumulator for a plane of the given size. Called once per band.
+     */
+    Accumulator<R> newAccumulator(int width, int height);
+
+    /**
+     * Running state of a metric over a band of rows. Accumulators are used by one thread at a time.
+     *
+     * @param <R> type of the result
+     */
+    interface Accumulator<R> {
+
+        /**
+         * Adds one row of the plane. The neighbouring rows are readable too, for metrics that filter; on the first
+         * and last rows of the plane the missing neighbour is -1.
+         *
+         * @param data  luma samples of the whole plane in row-major order
+         * @param y     index of the row
+         * @param row   offset of the first sample of the row in {@code data}
+         * @param above offset of the row above, or -1
+         * @param below offset of the row below, or -1
+         */
+        void addRow(byte[] data, int y, int row, int above, int below);
+
+        /**
+         * Adds the state of an accumulator of the same metric that covered the rows following this one's.
+         */
+        void merge(Accumulator<R> other);
+
+        R result();
+    }
+}
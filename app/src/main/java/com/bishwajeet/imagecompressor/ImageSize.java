@@ -0,0 +1,47 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Width and height of an image in pixels. {@code android.util.Size} is not available before Lollipop.
+ */
+public final class ImageSize {
+    private final int width;
+    private final int height;
+
+    public ImageSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ImageSize)) {
+            return false;
+        }
+        ImageSize other = (ImageSize) o;
+        return width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * width + height;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height;
+    }
+}
@@ -0,0 +1,234 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * Encoded image that {@link Compressor} can read several times, e.g. once for the bounds and once for the pixels,
+ * regardless of whether it lives in a file, behind a file descriptor or in memory.
+ */
+abstract class ImageSource {
+    private static final String LOG_TAG = ImageSource.class.getSimpleName();
+
+    /**
+     * Decodes the image from its beginning with the given options.
+     */
+    abstract Bitmap decode(BitmapFactory.Options options) throws IOException;
+
+    /**
+     * Creates a region decoder over the image.
+     */
+    abstract BitmapRegionDecoder newRegionDecoder() throws IOException;
+
+    /**
+     * Opens a stream over the encoded bytes from their beginning. Closing the stream does not close the source.
+     */
+    abstract InputStream openStream() throws IOException;
+
+    /**
+     * Reads the size, EXIF orientation and thumbnail location of the image. JPEG headers are parsed directly by
+     * {@link ExifParser}; for other formats the size comes from a bounds-only decode.
+     *
+     * @param header receives the result; its size is left unknown if the image cannot be read
+     */
+    void readHeader(ImageHeader header) throws IOException {
+        InputStream in = openStream();
+        try {
+            parseHeader(in, header);
+        } finally {
+            in.close();
+        }
+        if (!header.hasSize()) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decode(options);
+            readBounds(options, header);
+        }
+    }
+
+    /**
+     * Reads {@code length} bytes starting at {@code offset} from the beginning of the image.
+     */
+    byte[] readRange(long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        InputStream in = openStream();
+        try {
+            long remaining = offset;
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                remaining -= skipped;
+            }
+            int read = 0;
+            while (read < length) {
+                int count = in.read(data, read, length - read);
+                if (count == -1) {
+                    throw new EOFException();
+                }
+                read += count;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    static void parseHeader(InputStream in, ImageHeader header) throws IOException {
+        try {
+            ExifParser.get().parse(in, header);
+        } catch (EOFException e) {
+            // truncated header, whatever was read before the end is kept
+            Log.w(LOG_TAG, "Unexpected end of image header", e);
+        }
+    }
+
+    static void readBounds(BitmapFactory.Options options, ImageHeader header) {
+        header.width = options.outWidth;
+        header.height = options.outHeight;
+    }
+
+    static ImageSource fromFile(String filePath) {
+        return new FileSource(filePath);
+    }
+
+    /**
+     * The descriptor is read from its current position, which is restored before every read. It is not closed.
+     */
+    static ImageSource fromFileDescriptor(FileDescriptor fd) throws IOException {
+        return new FileDescriptorSource(fd);
+    }
+
+    /**
+     * The array is not copied and must not change while the source is in use.
+     */
+    static ImageSource fromBytes(byte[] data, int offset, int length) {
+        return new ByteArraySource(data, offset, length);
+    }
+
+    private static class FileSource extends ImageSource {
+        private final String filePath;
+
+        FileSource(String filePath) {
+            this.filePath = filePath;
+        }
+
+        @Override
+        Bitmap decode(BitmapFactory.Options options) {
+            return BitmapFactory.decodeFile(filePath, options);
+        }
+
+        @Override
+        BitmapRegionDecoder newRegionDecoder() throws IOException {
+            return BitmapRegionDecoder.newInstance(filePath, false);
+        }
+
+        @Override
+        InputStream openStream() throws IOException {
+            return new FileInputStream(filePath);
+        }
+
+        /**
+         * Falls back to the bounds decode on the same open file, so a header costs a single open.
+         */
+        @Override
+        void readHeader(ImageHeader header) throws IOException {
+            FileInputStream in = new FileInputStream(filePath);
+            try {
+                parseHeader(in, header);
+                if (!header.hasSize()) {
+                    in.getChannel().position(0);
+                    BitmapFactory.Options options = new BitmapFactory.Options();
+                    options.inJustDecodeBounds = true;
+                    BitmapFactory.decodeStream(in, null, options);
+                    readBounds(options, header);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return filePath;
+        }
+    }
+
+    private static class FileDescriptorSource extends ImageSource {
+        private final FileDescriptor fd;
+        // kept for the lifetime of the source so that its finalizer cannot close the caller's descriptor early
+        private final FileInputStream stream;
+        private final FileChannel channel;
+        private final long start;
+
+        FileDescriptorSource(FileDescriptor fd) throws IOException {
+            this.fd = fd;
+            this.stream = new FileInputStream(fd);
+            this.channel = stream.getChannel();
+            this.start = channel.position();
+        }
+
+        @Override
+        Bitmap decode(BitmapFactory.Options options) throws IOException {
+            channel.position(start);
+            return BitmapFactory.decodeFileDescriptor(fd, null, options);
+        }
+
+        @Override
+        BitmapRegionDecoder newRegionDecoder() throws IOException {
+            channel.position(start);
+            return BitmapRegionDecoder.newInstance(fd, false);
+        }
+
+        @Override
+        InputStream openStream() throws IOException {
+            channel.position(start);
+            return new FilterInputStream(Channels.newInputStream(channel)) {
+                @Override
+                public void close() {
+                    // the descriptor belongs to the caller
+                }
+            };
+        }
+    }
+
+    private static class ByteArraySource extends ImageSource {
+        private final byte[] data;
+        private final int offset;
+        private final int length;
+
+        ByteArraySource(byte[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        Bitmap decode(BitmapFactory.Options options) {
+            return BitmapFactory.decodeByteArray(data, offset, length, options);
+        }
+
+        @Override
+        BitmapRegionDecoder newRegionDecoder() throws IOException {
+            return BitmapRegionDecoder.newInstance(data, offset, length, false);
+        }
+
+        @Override
+        InputStream openStream() {
+            return new ByteArrayInputStream(data, offset, length);
+        }
+    }
+}
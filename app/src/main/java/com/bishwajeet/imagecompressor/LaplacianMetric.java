@@ -0,0 +1,85 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Scores sharpness as the variance of the 4-neighbour Laplacian, the kernel {@link BlurScorer} applies through
+ * OpenCV, so that scores of planes of the same size are on the same scale. The outermost pixels of the plane are
+ * left out rather than padded.
+ */
+public class LaplacianMetric implements ImageMetric<BlurScore> {
+    private final double threshold;
+
+    public LaplacianMetric() {
+        this(BlurScorer.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold Laplacian variance below which an image is considered blurry
+     */
+    public LaplacianMetric(double threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive.");
+        }
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Accumulator<BlurScore> newAccumulator(int width, int height) {
+        return new VarianceAccumulator(width);
+    }
+
+    private class VarianceAccumulator implements Accumulator<BlurScore> {
+        private final int width;
+        private long count;
+        private long sum;
+        private long sumOfSquares;
+        private int maxResponse;
+
+        VarianceAccumulator(int width) {
+            this.width = width;
+        }
+
+        @Override
+        public void addRow(byte[] data, int y, int row, int above, int below) {
+            if (above < 0 || below < 0 || width < 3) {
+                return;
+            }
+            long sum = 0;
+            long sumOfSquares = 0;
+            int maxResponse = this.maxResponse;
+            for (int x = 1; x < width - 1; x++) {
+                int laplacian = (data[row + x - 1] & 0xFF) + (data[row + x + 1] & 0xFF) + (data[above + x] & 0xFF)
+                        + (data[below + x] & 0xFF) - 4 * (data[row + x] & 0xFF);
+                sum += laplacian;
+                sumOfSquares += laplacian * laplacian;
+                int response = laplacian < 0 ? -laplacian : laplacian;
+                if (response > maxResponse) {
+                    maxResponse = response;
+                }
+            }
+            this.count += width - 2;
+            this.sum += sum;
+            this.sumOfSquares += sumOfSquares;
+            this.maxResponse = maxResponse;
+        }
+
+        @Override
+        public void merge(Accumulator<BlurScore> other) {
+            VarianceAccumulator band = (VarianceAccumulator) other;
+            count += band.count;
+            sum += band.sum;
+            sumOfSquares += band.sumOfSquares;
+            maxResponse = Math.max(maxResponse, band.maxResponse);
+        }
+
+        @Override
+        public BlurScore result() {
+            if (count == 0) {
+                return new BlurScore(0, 0, 0, true);
+            }
+            double mean = sum / (double) count;
+            double variance = sumOfSquares / (double) count - mean * mean;
+            return new BlurScore(variance, maxResponse, BlurScorer.confidence(variance, threshold),
+                    variance < threshold);
+        }
+    }
+}
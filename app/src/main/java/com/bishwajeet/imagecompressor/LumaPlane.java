@@ -0,0 +1,101 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+
+/**
+ * 8-bit luma plane of an image, usually a downscaled proxy used for analysis. The backing buffers are kept
+ * between calls to {@link #set(Bitmap, int, int)} so a plane can be refilled without allocating.
+ */
+public class LumaPlane {
+    private int width;
+    private int height;
+    private byte[] data = new byte[0];
+    private int[] rowBuffer = new int[0];
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the luma samples in row-major order. Only the first {@code width * height} bytes are valid.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Fills this plane with a copy of the given luma samples, such as the Y plane of a camera frame.
+     *
+     * @param luma   samples in row-major order, at least {@code width * height} of them
+     * @param width  width of the plane
+     * @param height height of the plane
+     */
+    void set(byte[] luma, int width, int height) {
+        if (luma.length < width * height) {
+            throw new IllegalArgumentException("Luma plane needs " + width * height + " samples.");
+        }
+        this.width = width;
+        this.height = height;
+        if (data.length < width * height) {
+            data = new byte[width * height];
+        }
+        System.arraycopy(luma, 0, data, 0, width * height);
+    }
+
+    /**
+     * Fills this plane with the luma of the bitmap, box-averaged down to {@code width} x {@code height}.
+     *
+     * @param bitmap source bitmap, at least as large as the plane
+     * @param width  width of the plane
+     * @param height height of the plane
+     */
+    public void set(Bitmap bitmap, int width, int height) {
+        int sourceWidth = bitmap.getWidth();
+        int sourceHeight = bitmap.getHeight();
+        if (width > sourceWidth || height > sourceHeight) {
+            throw new IllegalArgumentException("Luma plane must not be larger than its source.");
+        }
+
+        this.width = width;
+        this.height = height;
+        if (data.length < width * height) {
+            data = new byte[width * height];
+        }
+
+        int maxRows = (sourceHeight + height - 1) / height;
+        if (rowBuffer.length < sourceWidth * maxRows) {
+            rowBuffer = new int[sourceWidth * maxRows];
+        }
+
+        int[] rows = rowBuffer;
+        for (int y = 0; y < height; y++) {
+            int top = (int) ((long) y * sourceHeight / height);
+            int bottom = (int) ((long) (y + 1) * sourceHeight / height);
+            int rowCount = bottom - top;
+            bitmap.getPixels(rows, 0, sourceWidth, 0, top, sourceWidth, rowCount);
+
+            int out = y * width;
+            for (int x = 0; x < width; x++) {
+                int left = (int) ((long) x * sourceWidth / width);
+                int right = (int) ((long) (x + 1) * sourceWidth / width);
+                int sum = 0;
+                for (int r = 0; r < rowCount; r++) {
+                    int offset = r * sourceWidth;
+                    for (int c = left; c < right; c++) {
+                        sum += luma(rows[offset + c]);
+                    }
+                }
+                data[out + x] = (byte) (sum / (rowCount * (right - left)));
+            }
+        }
+    }
+
+    // BT.601 weights in 8-bit fixed point
+    static int luma(int argb) {
+        return (77 * ((argb >> 16) & 0xFF) + 150 * ((argb >> 8) & 0xFF) + 29 * (argb & 0xFF)) >> 8;
+    }
+}
@@ -0,0 +1,37 @@
+package com.bishwajeet.imagecompressor;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Shared budget of pixel memory that concurrent compressions reserve before decoding, so that several large
+ * images queue for memory instead of being decoded at the same time. Reservations are made in kilobytes and are
+ * granted in arrival order; a reservation larger than the whole budget is clamped to it and runs alone.
+ */
+class MemoryBudget {
+    private final Semaphore permits;
+    private final int totalKilobytes;
+
+    MemoryBudget(long maxBytes) {
+        this.totalKilobytes = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / 1024));
+        this.permits = new Semaphore(totalKilobytes, true);
+    }
+
+    /**
+     * Blocks until {@code bytes} are available.
+     *
+     * @return the reservation to hand back to {@link #release(int)}
+     */
+    int acquire(long bytes) throws InterruptedException {
+        int kilobytes = (int) Math.max(1, Math.min(totalKilobytes, (bytes + 1023) / 1024));
+        permits.acquire(kilobytes);
+        return kilobytes;
+    }
+
+    void release(int reservation) {
+        permits.release(reservation);
+    }
+
+    long getMaxSize() {
+        return totalKilobytes * 1024L;
+    }
+}
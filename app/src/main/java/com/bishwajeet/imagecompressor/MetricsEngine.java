@@ -0,0 +1,114 @@
+package com.bishwajeet.imagecompressor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs a set of {@link ImageMetric}s over a {@link LumaPlane} in a single pass. Each row is handed to every metric
+ * before moving on to the next, so it is still in cache while the metrics after the first read it, and each metric
+ * keeps its own tight inner loop. Rows are split into bands that run in parallel on a {@link CompressionExecutor}
+ * when one is given; the bands read the rows around their edges from the shared plane, so results do not depend
+ * on how the plane was split.
+ */
+public class MetricsEngine {
+
+    // fewer rows than this are not worth a band of their own
+    private static final int MIN_BAND_ROWS = 32;
+
+    private final List<ImageMetric<?>> metrics;
+    private final CompressionExecutor executor;
+    private final int parallelism;
+
+    /**
+     * Creates an engine that runs the standard metrics, exposure, sharpness, noise and contrast, with their default
+     * thresholds.
+     *
+     * @param executor    runs the bands of rows, or null to run on the calling thread
+     * @param parallelism maximum number of bands
+     */
+    public static MetricsEngine standard(CompressionExecutor executor, int parallelism) {
+        return new MetricsEngine(Arrays.<ImageMetric<?>>asList(new ExposureMetric(), new LaplacianMetric(),
+                new NoiseMetric(), new ContrastMetric()), executor, parallelism);
+    }
+
+    /**
+     * @param metrics     metrics to compute, in the order they see every row
+     * @param executor    runs the bands of rows, or null to run on the calling thread
+     * @param parallelism maximum number of bands
+     */
+    public MetricsEngine(List<ImageMetric<?>> metrics, CompressionExecutor executor, int parallelism) {
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("At least one metric is required.");
+        }
+        this.metrics = Collections.unmodifiableList(new ArrayList<>(metrics));
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public List<ImageMetric<?>> getMetrics() {
+        return metrics;
+    }
+
+    public MetricsReport measure(LumaPlane plane) {
+        final byte[] data = plane.getData();
+        final int width = plane.getWidth();
+        final int height = plane.getHeight();
+
+//      every band fills accumulators of its own, keyed by its first row so they can be merged in row order
+        final Map<Integer, ImageMetric.Accumulator<?>[]> bands = new TreeMap<>();
+        CompressionExecutor.Band band = new CompressionExecutor.Band() {
+            @Override
+            public void run(int from, int to) {
+                ImageMetric.Accumulator<?>[] accumulators = new ImageMetric.Accumulator<?>[metrics.size()];
+                for (int i = 0; i < accumulators.length; i++) {
+                    accumulators[i] = metrics.get(i).newAccumulator(width, height);
+                }
+                for (int y = from; y < to; y++) {
+                    if ((y - from) % MIN_BAND_ROWS == 0) {
+                        CompressionExecutor.throwIfCancelled();
+                    }
+                    int row = y * width;
+                    int above = y > 0 ? row - width : -1;
+                    int below = y < height - 1 ? row + width : -1;
+                    for (ImageMetric.Accumulator<?> accumulator : accumulators) {
+                        accumulator.addRow(data, y, row, above, below);
+                    }
+                }
+                synchronized (bands) {
+                    bands.put(from, accumulators);
+                }
+            }
+        };
+        if (executor == null) {
+            band.run(0, height);
+        } else {
+            executor.runBands(0, height, parallelism, MIN_BAND_ROWS, band);
+        }
+
+        Map<ImageMetric<?>, Object> results = new LinkedHashMap<>();
+        ImageMetric.Accumulator<?>[] merged = null;
+        for (ImageMetric.Accumulator<?>[] accumulators : bands.values()) {
+            if (merged == null) {
+                merged = accumulators;
+            } else {
+                for (int i = 0; i < merged.length; i++) {
+                    merge(merged[i], accumulators[i]);
+                }
+            }
+        }
+        for (int i = 0; i < metrics.size(); i++) {
+            results.put(metrics.get(i), merged != null ? merged[i].result() : null);
+        }
+        return new MetricsReport(width, height, results);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> void merge(ImageMetric.Accumulator<R> into, ImageMetric.Accumulator<?> other) {
+        into.merge((ImageMetric.Accumulator<R>) other);
+    }
+}
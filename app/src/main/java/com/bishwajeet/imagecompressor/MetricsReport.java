@@ -0,0 +1,119 @@
+package com.bishwajeet.imagecompressor;
+
+import java.util.Map;
+
+/**
+ * Results of one {@link MetricsEngine} pass over a {@link LumaPlane}. Any metric's result can be looked up with
+ * {@link #get(ImageMetric)}; the standard metrics also have getters of their own, which return null when the
+ * engine did not run them.
+ */
+public class MetricsReport {
+    private final int width;
+    private final int height;
+    private final Map<ImageMetric<?>, Object> results;
+
+    MetricsReport(int width, int height, Map<ImageMetric<?>, Object> results) {
+        this.width = width;
+        this.height = height;
+        this.results = results;
+    }
+
+    /**
+     * @return width of the analysed plane
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the analysed plane
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the result of the given metric, or null if the engine did not run it
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(ImageMetric<R> metric) {
+        return (R) results.get(metric);
+    }
+
+    public Exposure getExposure() {
+        ExposureMetric metric = find(ExposureMetric.class);
+        return metric != null ? get(metric) : null;
+    }
+
+    /**
+     * @return Laplacian variance score, on the same scale as {@link BlurScorer} for planes of the same size
+     */
+    public BlurScore getBlurScore() {
+        LaplacianMetric metric = find(LaplacianMetric.class);
+        return metric != null ? get(metric) : null;
+    }
+
+    /**
+     * @return estimated standard deviation of the noise in luma levels, or null
+     */
+    public Double getNoiseSigma() {
+        NoiseMetric metric = find(NoiseMetric.class);
+        return metric != null ? get(metric) : null;
+    }
+
+    /**
+     * @return RMS contrast from 0 to 1, or null
+     */
+    public Double getContrast() {
+        ContrastMetric metric = find(ContrastMetric.class);
+        return metric != null ? get(metric) : null;
+    }
+
+    public boolean isBlurry() {
+        BlurScore score = getBlurScore();
+        return score != null && score.isBlurry();
+    }
+
+    public boolean isUnderexposed() {
+        Exposure exposure = getExposure();
+        return exposure != null && exposure.isUnderexposed();
+    }
+
+    public boolean isOverexposed() {
+        Exposure exposure = getExposure();
+        return exposure != null && exposure.isOverexposed();
+    }
+
+    public boolean isNoisy() {
+        NoiseMetric metric = find(NoiseMetric.class);
+        Double sigma = metric != null ? get(metric) : null;
+        return sigma != null && metric.isNoisy(sigma);
+    }
+
+    public boolean isFlat() {
+        ContrastMetric metric = find(ContrastMetric.class);
+        Double contrast = metric != null ? get(metric) : null;
+        return contrast != null && metric.isFlat(contrast);
+    }
+
+    /**
+     * @return true if none of the standard metrics that ran found a problem
+     */
+    public boolean isAcceptable() {
+        return !isBlurry() && !isUnderexposed() && !isOverexposed() && !isNoisy() && !isFlat();
+    }
+
+    private <M extends ImageMetric<?>> M find(Class<M> type) {
+        for (ImageMetric<?> metric : results.keySet()) {
+            if (type.isInstance(metric)) {
+                return type.cast(metric);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsReport[" + width + "x" + height + ", " + results.values() + "]";
+    }
+}
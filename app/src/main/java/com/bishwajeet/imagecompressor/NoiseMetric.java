@@ -0,0 +1,109 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Estimates the standard deviation of sensor noise, in luma levels. Every interior pixel is filtered with a 3 x 3
+ * mask that cancels out flat areas and linear ramps, the difference of two Laplacians, and the noise is read from
+ * the median absolute response rather than its mean so that the edges of the scene, a minority of the pixels, do
+ * not count as noise.
+ */
+public class NoiseMetric implements ImageMetric<Double> {
+
+    /**
+     * Default noise level above which an image is considered noisy.
+     */
+    public static final double DEFAULT_MAX_SIGMA = 6;
+
+    // the mask [1 -2 1; -2 4 -2; 1 -2 1] scales the deviation of white noise by the root of the sum of its
+    // squared weights
+    private static final double MASK_GAIN = 6;
+    // median absolute deviation of a normal distribution, in standard deviations
+    private static final double MAD_SCALE = 0.6745;
+    private static final int MAX_RESPONSE = 16 * 255;
+
+    private final double maxSigma;
+
+    public NoiseMetric() {
+        this(DEFAULT_MAX_SIGMA);
+    }
+
+    /**
+     * @param maxSigma noise level above which an image is considered noisy
+     */
+    public NoiseMetric(double maxSigma) {
+        if (maxSigma <= 0) {
+            throw new IllegalArgumentException("Noise level must be positive.");
+        }
+        this.maxSigma = maxSigma;
+    }
+
+    public double getMaxSigma() {
+        return maxSigma;
+    }
+
+    public boolean isNoisy(double sigma) {
+        return sigma > maxSigma;
+    }
+
+    @Override
+    public Accumulator<Double> newAccumulator(int width, int height) {
+        return new MedianAccumulator(width);
+    }
+
+    private static class MedianAccumulator implements Accumulator<Double> {
+        private final int width;
+        private final int[] histogram = new int[MAX_RESPONSE + 1];
+        private long count;
+
+        MedianAccumulator(int width) {
+            this.width = width;
+        }
+
+        @Override
+        public void addRow(byte[] data, int y, int row, int above, int below) {
+            if (above < 0 || below < 0 || width < 3) {
+                return;
+            }
+            int[] histogram = this.histogram;
+            for (int x = 1; x < width - 1; x++) {
+                int corners = (data[above + x - 1] & 0xFF) + (data[above + x + 1] & 0xFF)
+                        + (data[below + x - 1] & 0xFF) + (data[below + x + 1] & 0xFF);
+                int sides = (data[above + x] & 0xFF) + (data[below + x] & 0xFF) + (data[row + x - 1] & 0xFF)
+                        + (data[row + x + 1] & 0xFF);
+                int response = corners - 2 * sides + 4 * (data[row + x] & 0xFF);
+                histogram[response < 0 ? -response : response]++;
+            }
+            count += width - 2;
+        }
+
+        @Override
+        public void merge(Accumulator<Double> other) {
+            MedianAccumulator band = (MedianAccumulator) other;
+            for (int i = 0; i <= MAX_RESPONSE; i++) {
+                histogram[i] += band.histogram[i];
+            }
+            count += band.count;
+        }
+
+        @Override
+        public Double result() {
+            if (count == 0) {
+                return 0.0;
+            }
+//          the responses are integers: spread every count over the half-open interval around its value so the
+//          median of small responses is not rounded to a whole level
+            double half = count / 2.0;
+            long below = 0;
+            for (int response = 0; response <= MAX_RESPONSE; response++) {
+                int pixels = histogram[response];
+                if (below + pixels >= half) {
+                    double start = response == 0 ? 0 : response - 0.5;
+                    double width = response == 0 ? 0.5 : 1;
+                    double median = start + width * (half - below) / pixels;
+                    return median / MAD_SCALE / MASK_GAIN;
+                }
+                below += pixels;
+            }
+            return MAX_RESPONSE / MAD_SCALE / MASK_GAIN;
+        }
+    }
+}
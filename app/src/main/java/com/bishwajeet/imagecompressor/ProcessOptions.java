@@ -0,0 +1,64 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * What {@link Compressor#process(String, ProcessOptions)} should produce besides the compressed image and its blur
+ * score.
+ */
+public class ProcessOptions {
+    private int previewSize;
+    private boolean sharpnessMap;
+    private boolean metrics;
+    private boolean save = true;
+
+    /**
+     * Deliver a preview with the given longest side before the image is processed, when processing
+     * asynchronously. 0, the default, delivers no preview.
+     */
+    public ProcessOptions previewSize(int previewSize) {
+        if (previewSize < 0) {
+            throw new IllegalArgumentException("Preview size must not be negative.");
+        }
+        this.previewSize = previewSize;
+        return this;
+    }
+
+    /**
+     * Also compute a tile by tile {@link SharpnessMap}. Off by default.
+     */
+    public ProcessOptions sharpnessMap(boolean sharpnessMap) {
+        this.sharpnessMap = sharpnessMap;
+        return this;
+    }
+
+    /**
+     * Also measure exposure, noise and contrast into a {@link MetricsReport}. Off by default.
+     */
+    public ProcessOptions metrics(boolean metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Write the compressed image to a new file. On by default; when off the image is only kept in memory.
+     */
+    public ProcessOptions save(boolean save) {
+        this.save = save;
+        return this;
+    }
+
+    public int getPreviewSize() {
+        return previewSize;
+    }
+
+    public boolean isSharpnessMap() {
+        return sharpnessMap;
+    }
+
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public boolean isSave() {
+        return save;
+    }
+}
@@ -0,0 +1,68 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Outcome of {@link Compressor#process(String, ProcessOptions)}: the compressed image together with the quality
+ * verdict computed from the same decode.
+ */
+public class ProcessResult {
+    private final CompressedImage image;
+    private final String filePath;
+    private final BlurScore blurScore;
+    private final SharpnessMap sharpnessMap;
+    private final MetricsReport metrics;
+    private final ProcessStats stats;
+
+    ProcessResult(CompressedImage image, String filePath, BlurScore blurScore, SharpnessMap sharpnessMap,
+                  MetricsReport metrics, ProcessStats stats) {
+        this.image = image;
+        this.filePath = filePath;
+        this.blurScore = blurScore;
+        this.sharpnessMap = sharpnessMap;
+        this.metrics = metrics;
+        this.stats = stats;
+    }
+
+    /**
+     * @return the compressed image
+     */
+    public CompressedImage getImage() {
+        return image;
+    }
+
+    /**
+     * @return path of the saved image, or null if it was not saved
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * @return blur score on the same scale as {@link Compressor#scoreBlur(String)}
+     */
+    public BlurScore getBlurScore() {
+        return blurScore;
+    }
+
+    /**
+     * @return the sharpness map, or null if it was not requested
+     */
+    public SharpnessMap getSharpnessMap() {
+        return sharpnessMap;
+    }
+
+    /**
+     * @return exposure, sharpness, noise and contrast, or null if they were not requested
+     */
+    public MetricsReport getMetrics() {
+        return metrics;
+    }
+
+    public ProcessStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessResult[" + filePath + ", " + image.getSize() + " bytes, " + blurScore + ", " + stats + "]";
+    }
+}
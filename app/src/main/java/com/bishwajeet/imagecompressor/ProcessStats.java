@@ -0,0 +1,70 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Work done by one {@link Compressor#process(String, ProcessOptions)} job.
+ */
+public class ProcessStats {
+    int headerReads;
+    int sourceDecodes;
+    int previewDecodes;
+    long decodedBytes;
+    long encodedBytes;
+    long decodeNanos;
+    long analysisNanos;
+    long encodeNanos;
+
+    /**
+     * @return number of times the header of the source was read
+     */
+    public int getHeaderReads() {
+        return headerReads;
+    }
+
+    /**
+     * @return number of times the source was decoded at full size, shared by the analysis and the compression
+     */
+    public int getSourceDecodes() {
+        return sourceDecodes;
+    }
+
+    /**
+     * @return number of preview decodes, from the EXIF thumbnail or heavily sub-sampled
+     */
+    public int getPreviewDecodes() {
+        return previewDecodes;
+    }
+
+    /**
+     * @return pixel bytes of the bitmap the source was decoded to, scaled and rotated upright
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    /**
+     * @return size of the compressed image in bytes
+     */
+    public long getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    public long getDecodeMillis() {
+        return decodeNanos / 1000000;
+    }
+
+    public long getAnalysisMillis() {
+        return analysisNanos / 1000000;
+    }
+
+    public long getEncodeMillis() {
+        return encodeNanos / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessStats[headerReads=" + headerReads + ", sourceDecodes=" + sourceDecodes + ", previewDecodes="
+                + previewDecodes + ", decodedBytes=" + decodedBytes + ", encodedBytes=" + encodedBytes
+                + ", decodeMs=" + getDecodeMillis() + ", analysisMs=" + getAnalysisMillis() + ", encodeMs="
+                + getEncodeMillis() + "]";
+    }
+}
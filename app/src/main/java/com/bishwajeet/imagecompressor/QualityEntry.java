@@ -0,0 +1,94 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Blur score of one image of the media store, as kept by a {@link QualityIndex}.
+ */
+public class QualityEntry {
+    private final long mediaId;
+    private final String uri;
+    private final long size;
+    private final long dateModified;
+    private final double score;
+    private final double sharpness;
+    private final double confidence;
+    private final boolean blurry;
+    private final boolean estimated;
+
+    QualityEntry(long mediaId, String uri, long size, long dateModified, double score, double sharpness,
+                 double confidence, boolean blurry, boolean estimated) {
+        this.mediaId = mediaId;
+        this.uri = uri;
+        this.size = size;
+        this.dateModified = dateModified;
+        this.score = score;
+        this.sharpness = sharpness;
+        this.confidence = confidence;
+        this.blurry = blurry;
+        this.estimated = estimated;
+    }
+
+    /**
+     * @return id of the image in the media store
+     */
+    public long getMediaId() {
+        return mediaId;
+    }
+
+    /**
+     * @return content Uri (String) of the image, as accepted by the methods of {@link Compressor}
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * @return size of the file in bytes when it was scored
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return modification time of the file in seconds when it was scored
+     */
+    public long getDateModified() {
+        return dateModified;
+    }
+
+    /**
+     * @return raw score, on the scale of {@link Compressor#estimateBlur(String)} if {@link #isEstimated()} and of
+     * {@link Compressor#scoreBlur(String)} otherwise
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return score divided by the blur threshold of its scorer, below 1 for blurry images; comparable across
+     * both scorers, and the order of {@link QualityIndex#blurriest(int)}
+     */
+    public double getSharpness() {
+        return sharpness;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public boolean isBlurry() {
+        return blurry;
+    }
+
+    /**
+     * @return true if the image was scored from its JPEG coefficients without decoding it
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    @Override
+    public String toString() {
+        return "QualityEntry[" + mediaId + ", sharpness=" + sharpness + (blurry ? ", blurry" : "")
+                + (estimated ? ", estimated" : "") + "]";
+    }
+}
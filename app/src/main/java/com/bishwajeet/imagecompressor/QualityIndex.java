@@ -0,0 +1,532 @@
+package com.bishwajeet.imagecompressor;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * Blur scores of the images in the media store, kept in a database of the application. Every row is keyed by the
+ * media id of its image and remembers the size and modification time the image had when it was scored, so an
+ * {@link #update} only scores images that were added or changed since the last one, and drops the rows of images
+ * that were deleted. Queries such as {@link #blurriest(int)} are answered from the database alone.
+ * <p>
+ * Images are scored from their JPEG coefficients when possible, see {@link Compressor#estimateBlur(String)}, and
+ * decoded for {@link Compressor#scoreBlur(String)} otherwise. Both scores are stored divided by the blur threshold
+ * of their scorer so that they can be ranked together.
+ */
+public class QualityIndex {
+    private static final String LOG_TAG = QualityIndex.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "quality_index.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE = "quality";
+    private static final String MEDIA_ID = "media_id";
+    private static final String SIZE = "size";
+    private static final String DATE_MODIFIED = "date_modified";
+    private static final String SCORE = "score";
+    private static final String SHARPNESS = "sharpness";
+    private static final String CONFIDENCE = "confidence";
+    private static final String BLURRY = "blurry";
+    private static final String ESTIMATED = "estimated";
+    private static final String[] COLUMNS =
+            {MEDIA_ID, SIZE, DATE_MODIFIED, SCORE, SHARPNESS, CONFIDENCE, BLURRY, ESTIMATED};
+
+    private static final String[] MEDIA_PROJECTION = {BaseColumns._ID, MediaStore.Images.ImageColumns.DATA,
+            MediaStore.Images.ImageColumns.SIZE, MediaStore.Images.ImageColumns.DATE_MODIFIED};
+    private static final String[] ID_PROJECTION = {BaseColumns._ID};
+    private static final String[] COUNT_PROJECTION = {"COUNT(*)"};
+
+    /**
+     * Number of images read from the media store, and written to the index, at a time.
+     */
+    static final int PAGE_SIZE = 200;
+
+    /**
+     * Notified after every page of an {@link #update}, on the indexing thread.
+     */
+    public interface ProgressListener {
+        void onProgress(QualityIndexStats stats);
+    }
+
+    /**
+     * Images to index, read a page at a time in id order.
+     */
+    interface MediaSource {
+        /**
+         * @return number of images, or 0 if unknown
+         */
+        int count();
+
+        /**
+         * @return up to {@code limit} images with an id after {@code lastId}, in id order
+         */
+        List<MediaItem> queryPage(long lastId, int limit);
+    }
+
+    /**
+     * Rows of the index, keyed by media id.
+     */
+    interface Store {
+        /**
+         * @return size and modification time of every indexed image with an id after {@code lastId} up to
+         * {@code pageEnd}, by media id
+         */
+        Map<Long, long[]> readRange(long lastId, long pageEnd);
+
+        /**
+         * Writes the rows of the given images and drops the rows of the given ids, in one transaction.
+         */
+        void write(List<MediaItem> items, Collection<Long> removedIds);
+
+        List<QualityEntry> blurriest(int limit);
+
+        QualityEntry get(long mediaId);
+
+        void close();
+    }
+
+    /**
+     * Scores one image, leaving its score null if it cannot be read.
+     */
+    interface Scorer {
+        void score(MediaItem item);
+    }
+
+    private final MediaSource media;
+    private final Store store;
+    private final Scorer scorer;
+    private final CompressionExecutor executor;
+    // held for the whole of an update, so that two never interleave their pages
+    private final Object updateLock = new Object();
+
+    private volatile QualityIndexStats stats;
+
+    QualityIndex(Context context, Compressor compressor) {
+        this(new MediaStoreSource(context.getContentResolver(), MediaStore.Images.Media.EXTERNAL_CONTENT_URI),
+                new DatabaseStore(new Database(context), MediaStore.Images.Media.EXTERNAL_CONTENT_URI),
+                new CompressorScorer(compressor), compressor.getExecutor());
+    }
+
+    QualityIndex(MediaSource media, Store store, Scorer scorer, CompressionExecutor executor) {
+        this.media = media;
+        this.store = store;
+        this.scorer = scorer;
+        this.executor = executor;
+    }
+
+    /**
+     * Brings the index up to date with the media store, scoring new and changed images. Blocks until done, so
+     * call it off the main thread; see {@link #updateAsync}. Stops between images if the job running it is
+     * cancelled, keeping the pages written so far.
+     *
+     * @param listener notified after every page, may be null
+     * @return the counters of this run
+     */
+    public QualityIndexStats update(ProgressListener listener) {
+        synchronized (updateLock) {
+            QualityIndexStats stats = new QualityIndexStats();
+            this.stats = stats;
+            stats.setTotalCount(media.count());
+            try {
+                long lastId = -1;
+                while (true) {
+                    List<MediaItem> page = media.queryPage(lastId, PAGE_SIZE);
+                    long pageEnd = page.size() < PAGE_SIZE ? Long.MAX_VALUE : page.get(page.size() - 1).id;
+                    indexPage(lastId, pageEnd, page, stats);
+                    if (listener != null) {
+                        listener.onProgress(stats);
+                    }
+                    if (pageEnd == Long.MAX_VALUE) {
+                        break;
+                    }
+                    lastId = pageEnd;
+                }
+            } finally {
+                stats.finish();
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Runs {@link #update} on the executor of the compressor, behind user-visible work.
+     *
+     * @param listener notified after every page on the indexing thread, may be null
+     * @return a future holding the counters of the run; cancelling it stops the run at the next image
+     */
+    public Future<QualityIndexStats> updateAsync(final ProgressListener listener) {
+        return executor.submit(CompressionExecutor.Priority.BACKGROUND, new Callable<QualityIndexStats>() {
+            @Override
+            public QualityIndexStats call() {
+                return update(listener);
+            }
+        });
+    }
+
+    /**
+     * @return the counters of the running update, or of the last one if none is running, or null if the index
+     * was never updated by this instance
+     */
+    public QualityIndexStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the least sharp images of the index, blurriest first. Images that could not be scored are left out.
+     *
+     * @param limit maximum number of images
+     */
+    public List<QualityEntry> blurriest(int limit) {
+        return store.blurriest(limit);
+    }
+
+    /**
+     * @return the indexed score of the image with the given media id, or null if it is not indexed or could not be
+     * scored
+     */
+    public QualityEntry get(long mediaId) {
+        return store.get(mediaId);
+    }
+
+    /**
+     * Closes the database. It is reopened by the next call.
+     */
+    public void close() {
+        store.close();
+    }
+
+    /**
+     * Scores the changed images of a page and writes them, and drops the rows of images that left the media store
+     * between {@code lastId} exclusive and {@code pageEnd} inclusive. Scoring happens before the write
+     * transaction is opened so that readers are not held up by decodes.
+     */
+    private void indexPage(long lastId, long pageEnd, List<MediaItem> page, QualityIndexStats stats) {
+        Map<Long, long[]> indexed = store.readRange(lastId, pageEnd);
+
+        List<MediaItem> changed = new ArrayList<>();
+        for (MediaItem item : page) {
+            long[] key = indexed.remove(item.id);
+            if (key == null || key[0] != item.size || key[1] != item.dateModified) {
+                changed.add(item);
+            }
+        }
+
+        int failed = 0;
+        for (MediaItem item : changed) {
+            CompressionExecutor.throwIfCancelled();
+            scorer.score(item);
+            if (item.score == null) {
+                failed++;
+            }
+        }
+
+//      what is left of the indexed range is not in the media store any more
+        store.write(changed, indexed.keySet());
+
+        stats.recordPage(page.size(), changed.size() - failed, page.size() - changed.size(), failed,
+                indexed.size());
+    }
+
+    static class MediaItem {
+        final long id;
+        final String path;
+        final long size;
+        final long dateModified;
+        BlurScore score;
+        double sharpness;
+        boolean estimated;
+
+        MediaItem(long id, String path, long size, long dateModified) {
+            this.id = id;
+            this.path = path;
+            this.size = size;
+            this.dateModified = dateModified;
+        }
+
+        void setScore(BlurScore score, double threshold, boolean estimated) {
+            this.score = score;
+            this.sharpness = score.getScore() / threshold;
+            this.estimated = estimated;
+        }
+    }
+
+    private static class MediaStoreSource implements MediaSource {
+        private final ContentResolver resolver;
+        private final Uri collection;
+        // set once the provider has thrown on a LIMIT; only used under the update lock
+        private boolean limitRejected;
+
+        MediaStoreSource(ContentResolver resolver, Uri collection) {
+            this.resolver = resolver;
+            this.collection = collection;
+        }
+
+        @Override
+        public int count() {
+            Cursor cursor;
+            try {
+                cursor = resolver.query(collection, COUNT_PROJECTION, null, null, null);
+            } catch (IllegalArgumentException e) {
+//              providers that only accept their own columns get the cheapest one, and count its rows
+                cursor = resolver.query(collection, ID_PROJECTION, null, null, null);
+                if (cursor == null) {
+                    return 0;
+                }
+                try {
+                    return cursor.getCount();
+                } finally {
+                    cursor.close();
+                }
+            }
+            if (cursor == null) {
+                return 0;
+            }
+            try {
+                return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+            } finally {
+                cursor.close();
+            }
+        }
+
+        /**
+         * The limit goes into the sort order, the only place a content provider query takes one before the
+         * query arguments of API 26, so that every page costs the provider one page of rows rather than the rest of
+         * the media store. Providers that reject it are queried without a limit from then on, and the cursor
+         * closed after one page.
+         */
+        @Override
+        public List<MediaItem> queryPage(long lastId, int limit) {
+            List<MediaItem> page = new ArrayList<>();
+            String selection = BaseColumns._ID + " > ?";
+            String[] selectionArgs = {String.valueOf(lastId)};
+            String sortOrder = BaseColumns._ID + " ASC";
+            Cursor cursor = null;
+            if (!limitRejected) {
+                try {
+                    cursor = resolver.query(collection, MEDIA_PROJECTION, selection, selectionArgs,
+                            sortOrder + " LIMIT " + limit);
+                } catch (IllegalArgumentException e) {
+                    Log.w(LOG_TAG, "Media store rejects LIMIT, reading pages from unlimited queries", e);
+                    limitRejected = true;
+                }
+            }
+            if (limitRejected) {
+                cursor = resolver.query(collection, MEDIA_PROJECTION, selection, selectionArgs, sortOrder);
+            }
+            if (cursor == null) {
+                return page;
+            }
+            try {
+                while (page.size() < limit && cursor.moveToNext()) {
+                    page.add(new MediaItem(cursor.getLong(0), cursor.getString(1), cursor.getLong(2),
+                            cursor.getLong(3)));
+                }
+            } finally {
+                cursor.close();
+            }
+            return page;
+        }
+    }
+
+    private static class DatabaseStore implements Store {
+        private final Database database;
+        private final Uri collection;
+
+        DatabaseStore(Database database, Uri collection) {
+            this.database = database;
+            this.collection = collection;
+        }
+
+        @Override
+        public Map<Long, long[]> readRange(long lastId, long pageEnd) {
+            Map<Long, long[]> indexed = new HashMap<>();
+            Cursor cursor = database.getReadableDatabase().query(TABLE, new String[]{MEDIA_ID, SIZE, DATE_MODIFIED},
+                    MEDIA_ID + " > ? AND " + MEDIA_ID + " <= ?",
+                    new String[]{String.valueOf(lastId), String.valueOf(pageEnd)}, null, null, null, null);
+            if (cursor == null) {
+                return indexed;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    indexed.put(cursor.getLong(0), new long[]{cursor.getLong(1), cursor.getLong(2)});
+                }
+            } finally {
+                cursor.close();
+            }
+            return indexed;
+        }
+
+        @Override
+        public void write(List<MediaItem> items, Collection<Long> removedIds) {
+            SQLiteDatabase db = database.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                try {
+                    for (MediaItem item : items) {
+                        bind(insert, item);
+                        insert.executeInsert();
+                    }
+                } finally {
+                    insert.close();
+                }
+                for (Long mediaId : removedIds) {
+                    db.delete(TABLE, MEDIA_ID + " = ?", new String[]{String.valueOf(mediaId)});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        @Override
+        public List<QualityEntry> blurriest(int limit) {
+            Cursor cursor = database.getReadableDatabase().query(TABLE, COLUMNS, SHARPNESS + " IS NOT NULL", null,
+                    null, null, SHARPNESS + " ASC", String.valueOf(limit));
+            List<QualityEntry> entries = new ArrayList<>();
+            if (cursor == null) {
+                return entries;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    entries.add(readEntry(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+            return entries;
+        }
+
+        @Override
+        public QualityEntry get(long mediaId) {
+            Cursor cursor = database.getReadableDatabase().query(TABLE, COLUMNS,
+                    MEDIA_ID + " = ? AND " + SHARPNESS + " IS NOT NULL", new String[]{String.valueOf(mediaId)},
+                    null, null, null, null);
+            if (cursor == null) {
+                return null;
+            }
+            try {
+                return cursor.moveToFirst() ? readEntry(cursor) : null;
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            database.close();
+        }
+
+        private static void bind(SQLiteStatement insert, MediaItem item) {
+            insert.clearBindings();
+            insert.bindLong(1, item.id);
+            insert.bindLong(2, item.size);
+            insert.bindLong(3, item.dateModified);
+            if (item.score != null) {
+                insert.bindDouble(4, item.score.getScore());
+                insert.bindDouble(5, item.sharpness);
+                insert.bindDouble(6, item.score.getConfidence());
+                insert.bindLong(7, item.score.isBlurry() ? 1 : 0);
+                insert.bindLong(8, item.estimated ? 1 : 0);
+            } else {
+//              a row without a score still records the key, so the image is not retried until it changes
+                for (int i = 4; i <= 8; i++) {
+                    insert.bindNull(i);
+                }
+            }
+        }
+
+        private QualityEntry readEntry(Cursor cursor) {
+            long mediaId = cursor.getLong(0);
+            return new QualityEntry(mediaId, ContentUris.withAppendedId(collection, mediaId).toString(),
+                    cursor.getLong(1), cursor.getLong(2), cursor.getDouble(3), cursor.getDouble(4),
+                    cursor.getDouble(5), cursor.getInt(6) != 0, cursor.getInt(7) != 0);
+        }
+    }
+
+    private static class CompressorScorer implements Scorer {
+        private final Compressor compressor;
+
+        CompressorScorer(Compressor compressor) {
+            this.compressor = compressor;
+        }
+
+        @Override
+        public void score(MediaItem item) {
+            if (item.path == null) {
+                return;
+            }
+            BlurScore score = null;
+            try {
+                score = compressor.estimateBlurAt(item.path);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+//              a file the coefficient parser cannot handle may still decode
+                Log.w(LOG_TAG, "Unable to estimate " + item.path, e);
+            }
+            if (score != null) {
+                item.setScore(score, DctBlurEstimator.DEFAULT_THRESHOLD, true);
+                return;
+            }
+            try {
+                score = compressor.scoreBlurAt(item.path);
+            } catch (CancellationException e) {
+                throw e;
+            } catch (RuntimeException e) {
+//              recorded as failed rather than ending the whole update
+                Log.w(LOG_TAG, "Unable to score " + item.path, e);
+            }
+            if (score != null) {
+                item.setScore(score, compressor.getBlurScorer().getThreshold(), false);
+            }
+        }
+    }
+
+    private static class Database extends SQLiteOpenHelper {
+
+        Database(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE + " ("
+                    + MEDIA_ID + " INTEGER PRIMARY KEY, "
+                    + SIZE + " INTEGER NOT NULL, "
+                    + DATE_MODIFIED + " INTEGER NOT NULL, "
+                    + SCORE + " REAL, "
+                    + SHARPNESS + " REAL, "
+                    + CONFIDENCE + " REAL, "
+                    + BLURRY + " INTEGER, "
+                    + ESTIMATED + " INTEGER)");
+            db.execSQL("CREATE INDEX " + TABLE + "_" + SHARPNESS + " ON " + TABLE + " (" + SHARPNESS + ")");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+//          the index only holds scores that can be recomputed
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+            onCreate(db);
+        }
+    }
+}
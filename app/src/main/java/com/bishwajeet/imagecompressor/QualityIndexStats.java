@@ -0,0 +1,117 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Progress of one {@link QualityIndex#update} run. The counters are written by the indexing thread only and can
+ * be read from any thread while the run is going on.
+ */
+public class QualityIndexStats {
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private volatile int totalCount;
+    private volatile int scannedCount;
+    private volatile int scoredCount;
+    private volatile int skippedCount;
+    private volatile int failedCount;
+    private volatile int removedCount;
+
+    void setTotalCount(int totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    void recordPage(int scanned, int scored, int skipped, int failed, int removed) {
+        scannedCount += scanned;
+        scoredCount += scored;
+        skippedCount += skipped;
+        failedCount += failed;
+        removedCount += removed;
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * @return number of images in the media store when the run started
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return number of images of the media store checked against the index so far
+     */
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    /**
+     * @return number of new or changed images that were scored
+     */
+    public int getScoredCount() {
+        return scoredCount;
+    }
+
+    /**
+     * @return number of images whose size and modification time were unchanged, so their score was kept
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return number of images that could not be read or decoded; they are not retried until they change
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return number of index rows dropped because their image left the media store
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * @return share of the images scanned so far, from 0 to 1
+     */
+    public double getProgress() {
+        if (endNanos != 0) {
+            return 1;
+        }
+        int total = totalCount;
+        return total > 0 ? Math.min(1, scannedCount / (double) total) : 0;
+    }
+
+    /**
+     * @return share of the scanned images that did not need scoring, from 0 to 1
+     */
+    public double getSkipRate() {
+        int scanned = scannedCount;
+        return scanned > 0 ? skippedCount / (double) scanned : 0;
+    }
+
+    /**
+     * @return images scored, or found to fail, per second of the run
+     */
+    public double getScoredPerSecond() {
+        long millis = getElapsedMillis();
+        return millis > 0 ? (scoredCount + failedCount) * 1000.0 / millis : 0;
+    }
+
+    public long getElapsedMillis() {
+        long end = endNanos;
+        return ((end != 0 ? end : System.nanoTime()) - startNanos) / 1000000;
+    }
+
+    public boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "QualityIndexStats[scanned=" + scannedCount + "/" + totalCount + ", scored=" + scoredCount
+                + ", skipped=" + skippedCount + ", failed=" + failedCount + ", removed=" + removedCount
+                + ", elapsedMs=" + getElapsedMillis() + "]";
+    }
+}
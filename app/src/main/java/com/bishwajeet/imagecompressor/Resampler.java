@@ -0,0 +1,255 @@
+package com.bishwajeet.imagecompressor;
+
+import java.util.Arrays;
+
+/**
+ * Pure-Java image resampler over packed ARGB pixels. Scaling is separable: rows are resampled horizontally into an
+ * intermediate plane, which is then resampled vertically, each pass with a table of fixed-point weights computed
+ * once per call. Rows are split into bands that run in parallel on a {@link CompressionExecutor} when one is
+ * given. Nothing is allocated per pixel.
+ * <p>
+ * Channels are filtered independently on unpremultiplied values, which is exact for opaque images.
+ */
+public class Resampler {
+
+    public enum Filter {
+        /**
+         * Every output pixel is the average of the source area it covers. Fast and free of aliasing for
+         * reductions.
+         */
+        AREA,
+        /**
+         * Separable Lanczos windowed sinc with three lobes. Sharper than {@link #AREA}, slight ringing on hard
+         * edges.
+         */
+        LANCZOS3
+    }
+
+    private static final int WEIGHT_BITS = 14;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+    private static final int ROUNDING = WEIGHT_ONE >> 1;
+    private static final int LANCZOS_LOBES = 3;
+
+    // bands smaller than this are not worth a task
+    private static final int MIN_BAND_ROWS = 32;
+
+    private final Filter filter;
+    private final CompressionExecutor executor;
+    private final int parallelism;
+
+    /**
+     * Creates a resampler that runs on the calling thread.
+     */
+    public Resampler(Filter filter) {
+        this(filter, null, 1);
+    }
+
+    /**
+     * @param executor    runs the bands of a pass, or null to run on the calling thread
+     * @param parallelism maximum number of bands per pass
+     */
+    public Resampler(Filter filter, CompressionExecutor executor, int parallelism) {
+        this.filter = filter;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Resamples {@code src} into {@code dst}. Both arrays hold rows of packed ARGB pixels without padding.
+     */
+    public void resize(final int[] src, final int srcWidth, int srcHeight, final int[] dst, final int dstWidth,
+                       int dstHeight) {
+        if (src.length < srcWidth * srcHeight || dst.length < dstWidth * dstHeight) {
+            throw new IllegalArgumentException("Pixel arrays are smaller than their dimensions.");
+        }
+        final Weights horizontal = new Weights(filter, srcWidth, dstWidth);
+        final Weights vertical = new Weights(filter, srcHeight, dstHeight);
+
+//      only the source rows that contribute to some output row need the horizontal pass
+        final int firstRow = vertical.start[0];
+        int lastRow = vertical.start[dstHeight - 1] + vertical.count[dstHeight - 1];
+        final int[] intermediate = new int[(lastRow - firstRow) * dstWidth];
+
+        runBands(firstRow, lastRow, new CompressionExecutor.Band() {
+            @Override
+            public void run(int from, int to) {
+                resampleRows(src, srcWidth, intermediate, dstWidth, firstRow, from, to, horizontal);
+            }
+        });
+        runBands(0, dstHeight, new CompressionExecutor.Band() {
+            @Override
+            public void run(int from, int to) {
+                resampleColumns(intermediate, dst, dstWidth, firstRow, from, to, vertical);
+            }
+        });
+    }
+
+    private static void resampleRows(int[] src, int srcWidth, int[] out, int outWidth, int firstRow, int from,
+                                     int to, Weights weights) {
+        int[] start = weights.start;
+        int[] count = weights.count;
+        int[] values = weights.values;
+        int taps = weights.taps;
+
+        for (int y = from; y < to; y++) {
+            int row = y * srcWidth;
+            int outRow = (y - firstRow) * outWidth;
+            for (int x = 0; x < outWidth; x++) {
+                int a = ROUNDING;
+                int r = ROUNDING;
+                int g = ROUNDING;
+                int b = ROUNDING;
+                int offset = row + start[x];
+                int w = x * taps;
+                for (int i = 0, n = count[x]; i < n; i++) {
+                    int pixel = src[offset + i];
+                    int weight = values[w + i];
+                    a += (pixel >>> 24) * weight;
+                    r += ((pixel >> 16) & 0xFF) * weight;
+                    g += ((pixel >> 8) & 0xFF) * weight;
+                    b += (pixel & 0xFF) * weight;
+                }
+                out[outRow + x] = pack(a, r, g, b);
+            }
+        }
+    }
+
+    private static void resampleColumns(int[] in, int[] dst, int width, int firstRow, int from, int to,
+                                        Weights weights) {
+        int[] start = weights.start;
+        int[] count = weights.count;
+        int[] values = weights.values;
+        int taps = weights.taps;
+
+//      accumulate whole rows at a time so the intermediate plane is read sequentially
+        int[] a = new int[width];
+        int[] r = new int[width];
+        int[] g = new int[width];
+        int[] b = new int[width];
+
+        for (int y = from; y < to; y++) {
+            Arrays.fill(a, ROUNDING);
+            Arrays.fill(r, ROUNDING);
+            Arrays.fill(g, ROUNDING);
+            Arrays.fill(b, ROUNDING);
+
+            int w = y * taps;
+            for (int i = 0, n = count[y]; i < n; i++) {
+                int weight = values[w + i];
+                int row = (start[y] + i - firstRow) * width;
+                for (int x = 0; x < width; x++) {
+                    int pixel = in[row + x];
+                    a[x] += (pixel >>> 24) * weight;
+                    r[x] += ((pixel >> 16) & 0xFF) * weight;
+                    g[x] += ((pixel >> 8) & 0xFF) * weight;
+                    b[x] += (pixel & 0xFF) * weight;
+                }
+            }
+
+            int outRow = y * width;
+            for (int x = 0; x < width; x++) {
+                dst[outRow + x] = pack(a[x], r[x], g[x], b[x]);
+            }
+        }
+    }
+
+    private static int pack(int a, int r, int g, int b) {
+        return clamp(a >> WEIGHT_BITS) << 24 | clamp(r >> WEIGHT_BITS) << 16 | clamp(g >> WEIGHT_BITS) << 8
+                | clamp(b >> WEIGHT_BITS);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    private void runBands(int from, int to, CompressionExecutor.Band band) {
+        if (executor == null) {
+            band.run(from, to);
+        } else {
+            executor.runBands(from, to, parallelism, MIN_BAND_ROWS, band);
+        }
+    }
+
+    /**
+     * Fixed-point filter weights mapping one axis of {@code srcSize} pixels onto {@code dstSize} pixels. Output
+     * pixel {@code i} is the weighted sum of the {@code count[i]} source pixels from {@code start[i]}, with weights
+     * at {@code values[i * taps]} summing to exactly {@link #WEIGHT_ONE}.
+     */
+    private static final class Weights {
+        final int[] start;
+        final int[] count;
+        final int[] values;
+        final int taps;
+
+        Weights(Filter filter, int srcSize, int dstSize) {
+            double scale = srcSize / (double) dstSize;
+            double filterScale = Math.max(1.0, scale);
+            double support = (filter == Filter.AREA ? 0.5 : LANCZOS_LOBES) * filterScale;
+
+            taps = (int) Math.ceil(support) * 2 + 1;
+            start = new int[dstSize];
+            count = new int[dstSize];
+            values = new int[dstSize * taps];
+            double[] weights = new double[taps];
+
+            for (int i = 0; i < dstSize; i++) {
+                double center = (i + 0.5) * scale;
+                int min = Math.max(0, (int) Math.floor(center - support));
+                int max = Math.min(srcSize, (int) Math.ceil(center + support));
+                int n = Math.min(taps, max - min);
+
+                double total = 0;
+                for (int j = 0; j < n; j++) {
+                    double x = (min + j + 0.5 - center) / filterScale;
+                    weights[j] = filter == Filter.AREA ? box(x, min + j, center, support, filterScale)
+                            : lanczos(x);
+                    total += weights[j];
+                }
+
+                int sum = 0;
+                int peak = 0;
+                for (int j = 0; j < n; j++) {
+                    int value = (int) Math.round(weights[j] / total * WEIGHT_ONE);
+                    values[i * taps + j] = value;
+                    sum += value;
+                    if (value > values[i * taps + peak]) {
+                        peak = j;
+                    }
+                }
+//              put the rounding error on the largest weight so that flat areas keep their exact value
+                values[i * taps + peak] += WEIGHT_ONE - sum;
+
+                start[i] = min;
+                count[i] = n;
+            }
+        }
+
+        /**
+         * Share of source pixel {@code index} inside the area covered by the output pixel.
+         */
+        private static double box(double x, int index, double center, double support, double filterScale) {
+            if (filterScale == 1.0) {
+                // enlarging or 1:1, the output pixel takes the source pixel under its center
+                return Math.abs(x) <= 0.5 ? 1 : 0;
+            }
+            double left = Math.max(index, center - support);
+            double right = Math.min(index + 1, center + support);
+            return Math.max(0, right - left);
+        }
+
+        private static double lanczos(double x) {
+            if (x == 0) {
+                return 1;
+            }
+            if (x <= -LANCZOS_LOBES || x >= LANCZOS_LOBES) {
+                return 0;
+            }
+            double px = Math.PI * x;
+            return LANCZOS_LOBES * Math.sin(px) * Math.sin(px / LANCZOS_LOBES) / (px * px);
+        }
+    }
+}
@@ -2,12 +2,10 @@ package com.bishwajeet.imagecompressor;
 
 import android.Manifest;
 import android.app.Activity;
-import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.support.design.widget.Snackbar;
@@ -29,6 +27,7 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
 public class SelectPictureActivity extends AppCompatActivity {
 
@@ -36,6 +35,7 @@ public class SelectPictureActivity extends AppCompatActivity {
 
     private static final int REQUEST_TAKE_CAMERA_PHOTO = 1;
     private static final int MY_PERMISSIONS_REQUEST_WRITE_STORAGE = 1;
+    private static final int PREVIEW_SIZE = 256;
     private static final String TAG = "SelectPictureActivity";
 
     static {
@@ -52,6 +52,7 @@ public class SelectPictureActivity extends AppCompatActivity {
     ImageView imageView;
     TextView picDescription;
     String quality;
+    Future<ProcessResult> mProcessTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -157,81 +158,89 @@ public class SelectPictureActivity extends AppCompatActivity {
         //verify if the image was gotten successfully
         if (requestCode == REQUEST_TAKE_CAMERA_PHOTO && resultCode == Activity.RESULT_OK) {
 
-            try {
-
-                new ImageCompressionAsyncTask(this).execute(capturedUri.toString());
-
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
+            compressCapturedImage(capturedUri.toString());
         }
 
     }
 
-    class ImageCompressionAsyncTask extends AsyncTask<String, Void, String> {
-
-        Context mContext;
+    /**
+     * Shows a preview of the captured image as soon as it is decoded, then the compressed image and its grade,
+     * both computed from a single decode on the compressor's executor ahead of any background work.
+     */
+    private void compressCapturedImage(final String imageUri) {
+        cancelTasks();
+        quality = null;
+
+        ProcessOptions options = new ProcessOptions().previewSize(PREVIEW_SIZE).metrics(true);
+        mProcessTask = Compressor.with(getApplicationContext()).processAsync(imageUri, options,
+                new Compressor.ProcessCallback() {
+                    @Override
+                    public void onPreview(Bitmap preview) {
+                        if (!isFinishing()) {
+                            imageView.setImageBitmap(preview);
+                        }
+                    }
+
+                    @Override
+                    public void onProcessed(ProcessResult result) {
+                        if (result != null && !isFinishing()) {
+                            showResult(result);
+                        }
+                    }
+                });
+    }
 
-        public ImageCompressionAsyncTask(Context context) {
-            mContext = context;
+    private void cancelTasks() {
+        if (mProcessTask != null) {
+            mProcessTask.cancel(false);
         }
+    }
 
-        @Override
-        protected String doInBackground(String... params) {
-
-            quality = Compressor.with(mContext).imageQuality(params[0]);
-            String filePath = Compressor.with(mContext).compress(params[0]);
-            return filePath;
-
+    private void showResult(ProcessResult result) {
+        CompressedImage image = result.getImage();
+        imageView.setImageBitmap(image.getBitmap());
 
-            /*
-            Bitmap compressBitMap = null;
-            try {
-                compressBitMap = SiliCompressor.with(mContext).getCompressBitmap(params[0], true);
-                return compressBitMap;
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return compressBitMap;
-
-            */
+        String name = null;
+        if (result.getFilePath() != null) {
+            File imageFile = new File(result.getFilePath());
+            compressUri = Uri.fromFile(imageFile);
+            name = imageFile.getName();
         }
+        showDescription(name, image);
 
-        @Override
-        protected void onPostExecute(String s) {
-            /*
-            if (null != s){
-                imageView.setImageBitmap(s);
-                int compressHieght = s.getHeight();
-                int compressWidth = s.getWidth();
-                float length = s.getByteCount() / 1024f; // Size in KB;
-
-                String text = String.format("Name: %s\nSize: %fKB\nWidth: %d\nHeight: %d", "ff", length, compressWidth, compressHieght);
-                picDescription.setVisibility(View.VISIBLE);
-                picDescription.setText(text);
-            }
-            */
+        quality = describeQuality(result);
+        Snackbar.make(picDescription, quality.toUpperCase(), Snackbar.LENGTH_LONG).show();
+        Log.d(LOG_TAG, result.toString());
+    }
 
-            File imageFile = new File(s);
-            compressUri = Uri.fromFile(imageFile);
+    private static String describeQuality(ProcessResult result) {
+        if (result.getBlurScore().isBlurry()) {
+            return "blur image";
+        }
+        MetricsReport metrics = result.getMetrics();
+        if (metrics.isUnderexposed()) {
+            return "Underexposed image";
+        } else if (metrics.isOverexposed()) {
+            return "Overexposed image";
+        } else if (metrics.isNoisy()) {
+            return "Noisy image";
+        }
+        return "Not a blur image";
+    }
 
-            try {
-                Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), compressUri);
-                imageView.setImageBitmap(bitmap);
-
-                String name = imageFile.getName();
-                float length = imageFile.length() / 1024f; // Size in KB
-                int compressWidth = bitmap.getWidth();
-                int compressHieght = bitmap.getHeight();
-                String text = String.format(Locale.US, "Name: %s\nSize: %fKB\nWidth: %d\nHeight: %d", name, length, compressWidth, compressHieght);
-                picDescription.setVisibility(View.VISIBLE);
-                picDescription.setText(text);
-                Snackbar.make(picDescription, quality.toUpperCase(), Snackbar.LENGTH_LONG).show();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    private void showDescription(String name, CompressedImage image) {
+        float length = image.getSize() / 1024f; // Size in KB
+        int compressWidth = image.getWidth();
+        int compressHieght = image.getHeight();
+        String text = String.format(Locale.US, "Name: %s\nSize: %fKB\nWidth: %d\nHeight: %d",
+                name != null ? name : "-", length, compressWidth, compressHieght);
+        picDescription.setVisibility(View.VISIBLE);
+        picDescription.setText(text);
+    }
 
-        }
+    @Override
+    protected void onDestroy() {
+        cancelTasks();
+        super.onDestroy();
     }
 }
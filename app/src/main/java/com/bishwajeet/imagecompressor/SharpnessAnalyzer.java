@@ -0,0 +1,132 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Computes a {@link SharpnessMap} from a {@link LumaPlane}. Every tile reads its pixels, and the neighbours its
+ * Laplacian needs, straight from the shared plane; nothing is copied per tile. Rows of tiles are split into
+ * bands that run in parallel on a {@link CompressionExecutor} when one is given.
+ */
+public class SharpnessAnalyzer {
+
+    /**
+     * Default side of a tile in pixels, which splits a plane at the default analysis size into 16 x 12 tiles.
+     */
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    // structure tensor sums kept per tile: gx * gx, gy * gy, gx * gy
+    private static final int TENSOR_SIZE = 3;
+
+    private final int tileSize;
+    private final double threshold;
+    private final CompressionExecutor executor;
+    private final int parallelism;
+
+    /**
+     * Creates an analyzer that runs on the calling thread.
+     */
+    public SharpnessAnalyzer() {
+        this(DEFAULT_TILE_SIZE, BlurScorer.DEFAULT_THRESHOLD, null, 1);
+    }
+
+    /**
+     * @param tileSize    side of a tile in pixels
+     * @param threshold   Laplacian variance from which a tile counts as sharp
+     * @param executor    runs the bands of tile rows, or null to run on the calling thread
+     * @param parallelism maximum number of bands
+     */
+    public SharpnessAnalyzer(int tileSize, double threshold, CompressionExecutor executor, int parallelism) {
+        if (tileSize < 3 || threshold <= 0) {
+            throw new IllegalArgumentException("Tile size must be at least 3 and threshold positive.");
+        }
+        this.tileSize = tileSize;
+        this.threshold = threshold;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public SharpnessMap analyze(LumaPlane plane) {
+        final byte[] data = plane.getData();
+        final int width = plane.getWidth();
+        final int height = plane.getHeight();
+        final int columns = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+
+        final float[] values = new float[columns * rows];
+        final long[] tensors = new long[columns * rows * TENSOR_SIZE];
+        CompressionExecutor.Band band = new CompressionExecutor.Band() {
+            @Override
+            public void run(int from, int to) {
+                for (int row = from; row < to; row++) {
+                    CompressionExecutor.throwIfCancelled();
+                    for (int column = 0; column < columns; column++) {
+                        analyzeTile(data, width, height, column, row, row * columns + column, values, tensors);
+                    }
+                }
+            }
+        };
+        if (executor == null) {
+            band.run(0, rows);
+        } else {
+            executor.runBands(0, rows, parallelism, 1, band);
+        }
+
+//      the structure tensor of the whole plane: motion leaves strong gradients across its direction only
+        double xx = 0;
+        double yy = 0;
+        double xy = 0;
+        for (int i = 0; i < tensors.length; i += TENSOR_SIZE) {
+            xx += tensors[i];
+            yy += tensors[i + 1];
+            xy += tensors[i + 2];
+        }
+        double anisotropy = xx + yy > 0 ? Math.sqrt((xx - yy) * (xx - yy) + 4 * xy * xy) / (xx + yy) : 0;
+        // the dominant gradient direction with y pointing down, turned a quarter to get the direction of motion
+        double gradientAngle = Math.toDegrees(0.5 * Math.atan2(2 * xy, xx - yy));
+        int motionAngle = (int) Math.round(-(gradientAngle + 90));
+        motionAngle = ((motionAngle % 180) + 180) % 180;
+        return new SharpnessMap(columns, rows, tileSize, values, threshold, anisotropy, motionAngle);
+    }
+
+    private void analyzeTile(byte[] data, int width, int height, int column, int row, int tile, float[] values,
+                             long[] tensors) {
+//      the Laplacian needs all four neighbours, so the outermost pixels of the plane are left out
+        int left = Math.max(1, column * tileSize);
+        int right = Math.min(width - 1, (column + 1) * tileSize);
+        int top = Math.max(1, row * tileSize);
+        int bottom = Math.min(height - 1, (row + 1) * tileSize);
+
+        long sum = 0;
+        long sumOfSquares = 0;
+        long xx = 0;
+        long yy = 0;
+        long xy = 0;
+        for (int y = top; y < bottom; y++) {
+            int index = y * width + left;
+            for (int x = left; x < right; x++, index++) {
+                int center = data[index] & 0xFF;
+                int west = data[index - 1] & 0xFF;
+                int east = data[index + 1] & 0xFF;
+                int north = data[index - width] & 0xFF;
+                int south = data[index + width] & 0xFF;
+                int laplacian = west + east + north + south - 4 * center;
+                sum += laplacian;
+                sumOfSquares += laplacian * laplacian;
+
+                int gx = east - west;
+                int gy = south - north;
+                xx += gx * gx;
+                yy += gy * gy;
+                xy += gx * gy;
+            }
+        }
+
+        int count = Math.max(0, right - left) * Math.max(0, bottom - top);
+        if (count > 0) {
+            double mean = sum / (double) count;
+            values[tile] = (float) (sumOfSquares / (double) count - mean * mean);
+        }
+        int offset = tile * TENSOR_SIZE;
+        tensors[offset] = xx;
+        tensors[offset + 1] = yy;
+        tensors[offset + 2] = xy;
+    }
+}
@@ -0,0 +1,130 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Per-tile sharpness of an image, as computed by {@link SharpnessAnalyzer}. A single score lets one sharp edge
+ * hide a mostly blurry photo; the map shows which parts are sharp, and the directional statistics tell motion
+ * blur, which smears along one direction, from defocus, which blurs all directions alike.
+ */
+public class SharpnessMap {
+    private final int columns;
+    private final int rows;
+    private final int tileSize;
+    private final float[] values;
+    private final double threshold;
+    private final int sharpTiles;
+    private final int sharpestTile;
+    private final double motionAnisotropy;
+    private final int motionAngle;
+
+    SharpnessMap(int columns, int rows, int tileSize, float[] values, double threshold, double motionAnisotropy,
+                 int motionAngle) {
+        this.columns = columns;
+        this.rows = rows;
+        this.tileSize = tileSize;
+        this.values = values;
+        this.threshold = threshold;
+        this.motionAnisotropy = motionAnisotropy;
+        this.motionAngle = motionAngle;
+
+        int sharp = 0;
+        int sharpest = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] >= threshold) {
+                sharp++;
+            }
+            if (values[i] > values[sharpest]) {
+                sharpest = i;
+            }
+        }
+        sharpTiles = sharp;
+        sharpestTile = sharpest;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return side of a tile in pixels of the analysed plane; tiles on the right and bottom edges may be smaller
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return Laplacian variance of the tile in the given column and row; higher is sharper
+     */
+    public float getSharpness(int column, int row) {
+        return values[row * columns + column];
+    }
+
+    /**
+     * Returns the heatmap, the Laplacian variance of every tile in row-major order. The array is not copied and
+     * must not be modified.
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return Laplacian variance from which a tile counts as sharp
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @return share of the tiles that are sharp, from 0 to 1
+     */
+    public double getSharpFraction() {
+        return values.length > 0 ? sharpTiles / (double) values.length : 0;
+    }
+
+    /**
+     * @return column of the sharpest tile
+     */
+    public int getSharpestColumn() {
+        return sharpestTile % columns;
+    }
+
+    /**
+     * @return row of the sharpest tile
+     */
+    public int getSharpestRow() {
+        return sharpestTile / columns;
+    }
+
+    /**
+     * @return Laplacian variance of the sharpest tile
+     */
+    public float getMaxSharpness() {
+        return values.length > 0 ? values[sharpestTile] : 0;
+    }
+
+    /**
+     * @return coherence of the gradient directions over the whole image, from 0 when all directions are alike to 1
+     * when every gradient points the same way; high values point to motion blur
+     */
+    public double getMotionAnisotropy() {
+        return motionAnisotropy;
+    }
+
+    /**
+     * @return direction across the dominant gradients, the likely direction of motion, in degrees
+     * counter-clockwise from horizontal, from 0 to 179
+     */
+    public int getMotionAngle() {
+        return motionAngle;
+    }
+
+    @Override
+    public String toString() {
+        return "SharpnessMap[" + columns + "x" + rows + " tiles of " + tileSize + ", sharp=" + sharpTiles
+                + ", sharpest=" + getMaxSharpness() + " at " + getSharpestColumn() + "," + getSharpestRow()
+                + ", motionAnisotropy=" + motionAnisotropy + " at " + motionAngle + "]";
+    }
+}
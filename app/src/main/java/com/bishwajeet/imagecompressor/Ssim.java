@@ -0,0 +1,104 @@
+package com.bishwajeet.imagecompressor;
+
+/**
+ * Structural similarity (SSIM) between two luma planes, computed over square windows with summed-area tables so
+ * every window costs the same regardless of its size. The tables are kept between calls; once they are large
+ * enough {@link #compute(LumaPlane, LumaPlane)} does not allocate.
+ */
+class Ssim {
+    static final int WINDOW = 8;
+    private static final int STEP = WINDOW / 2;
+
+    private static final double C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double C2 = (0.03 * 255) * (0.03 * 255);
+
+    private long[] sumX = new long[0];
+    private long[] sumY = new long[0];
+    private long[] sumXX = new long[0];
+    private long[] sumYY = new long[0];
+    private long[] sumXY = new long[0];
+
+    /**
+     * @return the mean SSIM of all windows, 1 for identical planes
+     */
+    double compute(LumaPlane first, LumaPlane second) {
+        int width = first.getWidth();
+        int height = first.getHeight();
+        if (width != second.getWidth() || height != second.getHeight()) {
+            throw new IllegalArgumentException("Luma planes must have the same size.");
+        }
+        if (width == 0 || height == 0) {
+            return 1;
+        }
+
+        buildTables(first.getData(), second.getData(), width, height);
+
+        int window = Math.min(WINDOW, Math.min(width, height));
+        int step = Math.max(1, Math.min(STEP, window / 2));
+        int stride = width + 1;
+        double n = window * window;
+
+        double total = 0;
+        int count = 0;
+        for (int top = 0; top + window <= height; top += step) {
+            int upper = top * stride;
+            int lower = (top + window) * stride;
+            for (int left = 0; left + window <= width; left += step) {
+                int a = upper + left;
+                int b = upper + left + window;
+                int c = lower + left;
+                int d = lower + left + window;
+
+                double meanX = (sumX[d] - sumX[b] - sumX[c] + sumX[a]) / n;
+                double meanY = (sumY[d] - sumY[b] - sumY[c] + sumY[a]) / n;
+                double varianceX = (sumXX[d] - sumXX[b] - sumXX[c] + sumXX[a]) / n - meanX * meanX;
+                double varianceY = (sumYY[d] - sumYY[b] - sumYY[c] + sumYY[a]) / n - meanY * meanY;
+                double covariance = (sumXY[d] - sumXY[b] - sumXY[c] + sumXY[a]) / n - meanX * meanY;
+
+                total += ((2 * meanX * meanY + C1) * (2 * covariance + C2))
+                        / ((meanX * meanX + meanY * meanY + C1) * (varianceX + varianceY + C2));
+                count++;
+            }
+        }
+        return total / count;
+    }
+
+    private void buildTables(byte[] x, byte[] y, int width, int height) {
+        int stride = width + 1;
+        int size = stride * (height + 1);
+        if (sumX.length < size) {
+            sumX = new long[size];
+            sumY = new long[size];
+            sumXX = new long[size];
+            sumYY = new long[size];
+            sumXY = new long[size];
+        }
+
+        for (int col = 0; col < stride; col++) {
+            sumX[col] = sumY[col] = sumXX[col] = sumYY[col] = sumXY[col] = 0;
+        }
+        for (int row = 1; row <= height; row++) {
+            int base = row * stride;
+            int above = base - stride;
+            int source = (row - 1) * width;
+            sumX[base] = sumY[base] = sumXX[base] = sumYY[base] = sumXY[base] = 0;
+
+            long rowX = 0, rowY = 0, rowXX = 0, rowYY = 0, rowXY = 0;
+            for (int col = 1; col <= width; col++) {
+                int valueX = x[source + col - 1] & 0xFF;
+                int valueY = y[source + col - 1] & 0xFF;
+                rowX += valueX;
+                rowY += valueY;
+                rowXX += valueX * valueX;
+                rowYY += valueY * valueY;
+                rowXY += valueX * valueY;
+
+                sumX[base + col] = sumX[above + col] + rowX;
+                sumY[base + col] = sumY[above + col] + rowY;
+                sumXX[base + col] = sumXX[above + col] + rowXX;
+                sumYY[base + col] = sumYY[above + col] + rowYY;
+                sumXY[base + col] = sumXY[above + col] + rowXY;
+            }
+        }
+    }
+}
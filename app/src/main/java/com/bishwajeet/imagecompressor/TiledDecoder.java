@@ -0,0 +1,115 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Decodes very large images in horizontal bands with a {@link BitmapRegionDecoder}. Every band is drawn straight
+ * into the scaled and rotated output bitmap and released, so the source pixels resident at any time are bounded
+ * by the band height rather than by the size of the image.
+ */
+class TiledDecoder {
+    private static final String LOG_TAG = TiledDecoder.class.getSimpleName();
+
+    // decoded bytes per band, excluding the overlap
+    static final int DEFAULT_BAND_SIZE = 4 * 1024 * 1024;
+
+    // decoded rows shared with the neighbouring bands so that bitmap filtering does not leave seams
+    private static final int BAND_OVERLAP = 2;
+
+    private final BitmapPool mBitmapPool;
+    private final int mBandSize;
+
+    TiledDecoder(BitmapPool bitmapPool) {
+        this(bitmapPool, DEFAULT_BAND_SIZE);
+    }
+
+    TiledDecoder(BitmapPool bitmapPool, int bandSize) {
+        mBitmapPool = bitmapPool;
+        mBandSize = bandSize;
+    }
+
+    /**
+     * Decodes the image band by band into a bitmap of the target size, rotated to its EXIF orientation.
+     *
+     * @param source       the encoded source image
+     * @param sourceWidth  width of the source image
+     * @param sourceHeight height of the source image
+     * @param targetWidth  width of the scaled image before rotation
+     * @param targetHeight height of the scaled image before rotation
+     * @param orientation  EXIF orientation of the source
+     * @return the output bitmap, or null if the image format is not supported by the region decoder
+     */
+    Bitmap decode(ImageSource source, int sourceWidth, int sourceHeight, int targetWidth, int targetHeight,
+                  int orientation) {
+        BitmapRegionDecoder decoder;
+        try {
+            decoder = source.newRegionDecoder();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Region decoding not supported for " + source, e);
+            return null;
+        }
+
+//      the same sample size as a whole-image decode, so bands are never decoded below the output size
+        int sampleSize = DecodePlanner.sampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight);
+        int sampledWidth = DecodePlanner.sampledSize(sourceWidth, sampleSize);
+        int bandHeight = Math.max(1, mBandSize / (sampledWidth * 4)) * sampleSize;
+        int overlap = BAND_OVERLAP * sampleSize;
+        float scaleY = targetHeight / (float) sourceHeight;
+
+        Bitmap output = mBitmapPool.getOrCreate(
+                Compressor.outputWidth(orientation, targetWidth, targetHeight),
+                Compressor.outputHeight(orientation, targetWidth, targetHeight),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(output);
+        canvas.concat(Compressor.orientationMatrix(orientation, targetWidth, targetHeight));
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inTempStorage = mBitmapPool.acquireTempStorage();
+
+        Rect region = new Rect();
+        Matrix bandMatrix = new Matrix();
+        try {
+            for (int top = 0; top < sourceHeight; top += bandHeight) {
+                CompressionExecutor.throwIfCancelled();
+                int bottom = Math.min(sourceHeight, top + bandHeight);
+                region.set(0, Math.max(0, top - overlap), sourceWidth, Math.min(sourceHeight, bottom + overlap));
+
+                Bitmap band = decoder.decodeRegion(region, options);
+                if (band == null) {
+                    mBitmapPool.put(output);
+                    return null;
+                }
+
+//              map the band onto its rows of the upright target and only let it paint the rows it owns
+                bandMatrix.setScale(targetWidth / (float) band.getWidth(),
+                        (region.bottom - region.top) * scaleY / band.getHeight());
+                bandMatrix.postTranslate(0, region.top * scaleY);
+
+                canvas.save();
+                canvas.clipRect(0, top * scaleY, targetWidth, bottom * scaleY);
+                canvas.drawBitmap(band, bandMatrix, paint);
+                canvas.restore();
+                band.recycle();
+            }
+        } catch (OutOfMemoryError | CancellationException e) {
+            mBitmapPool.put(output);
+            throw e;
+        } finally {
+            mBitmapPool.releaseTempStorage(options.inTempStorage);
+            decoder.recycle();
+        }
+        return output;
+    }
+}
@@ -0,0 +1,179 @@
+package com.bishwajeet.imagecompressor;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.BaseColumns;
+import android.provider.MediaStore;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of the file paths behind image Uris, so that an image compressed, decoded and deleted in a row is
+ * only looked up once. Lookups query the DATA column alone, and the cache drops entries when the media provider
+ * reports that they changed.
+ */
+class UriPathCache {
+    private static final String[] DATA_PROJECTION = {MediaStore.Images.ImageColumns.DATA};
+    private static final String[] BATCH_PROJECTION = {BaseColumns._ID, MediaStore.Images.ImageColumns.DATA};
+
+    // well below the 999 bound parameters SQLite accepts in one statement
+    static final int BATCH_SIZE = 200;
+
+    private final ContentResolver resolver;
+    private final LruCache<String, String> paths;
+
+    UriPathCache(Context context, int maxEntries) {
+        this.resolver = context.getContentResolver();
+        this.paths = new LruCache<>(maxEntries);
+
+        resolver.registerContentObserver(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true,
+                new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        onChange(selfChange, null);
+                    }
+
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        if (uri == null || !isItemUri(uri.toString())) {
+                            paths.evictAll();
+                        } else {
+                            paths.remove(uri.toString());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Returns the file path behind the Uri, querying the content resolver only if it is not cached.
+     */
+    String get(String contentUri) {
+        String path = paths.get(contentUri);
+        if (path != null) {
+            return path;
+        }
+
+        Uri uri = Uri.parse(contentUri);
+        Cursor cursor = resolver.query(uri, DATA_PROJECTION, null, null, null);
+        if (cursor == null) {
+            path = uri.getPath();
+        } else {
+            try {
+                path = cursor.moveToFirst() ? cursor.getString(0) : null;
+            } finally {
+                cursor.close();
+            }
+            if (path == null) {
+                path = uri.getPath();
+            }
+        }
+        if (path != null) {
+            paths.put(contentUri, path);
+        }
+        return path;
+    }
+
+    /**
+     * Resolves several Uris at once. Uris of items in the same collection are looked up with one
+     * {@code _id IN (...)} query per {@link #BATCH_SIZE} items; any other Uri is resolved on its own.
+     *
+     * @return the file path of every Uri, in iteration order of the argument
+     */
+    Map<String, String> getAll(Collection<String> contentUris) {
+        Map<String, String> result = new LinkedHashMap<>();
+        Map<String, List<String>> pendingByCollection = new LinkedHashMap<>();
+        for (String contentUri : contentUris) {
+            String path = paths.get(contentUri);
+            result.put(contentUri, path);
+            if (path != null || !isItemUri(contentUri)) {
+                continue;
+            }
+            String collection = contentUri.substring(0, contentUri.lastIndexOf('/'));
+            List<String> pending = pendingByCollection.get(collection);
+            if (pending == null) {
+                pending = new ArrayList<>();
+                pendingByCollection.put(collection, pending);
+            }
+            pending.add(contentUri);
+        }
+
+        for (Map.Entry<String, List<String>> entry : pendingByCollection.entrySet()) {
+            List<String> pending = entry.getValue();
+            for (int start = 0; start < pending.size(); start += BATCH_SIZE) {
+                queryBatch(entry.getKey(), pending.subList(start, Math.min(start + BATCH_SIZE, pending.size())),
+                        result);
+            }
+        }
+
+        for (Map.Entry<String, String> entry : result.entrySet()) {
+            if (entry.getValue() == null) {
+                entry.setValue(get(entry.getKey()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the path of the Uri, e.g. after the file was deleted.
+     */
+    void remove(String contentUri) {
+        paths.remove(contentUri);
+    }
+
+    private void queryBatch(String collection, List<String> contentUris, Map<String, String> result) {
+        StringBuilder selection = new StringBuilder(BaseColumns._ID).append(" IN (");
+        String[] ids = new String[contentUris.size()];
+        for (int i = 0; i < ids.length; i++) {
+            String contentUri = contentUris.get(i);
+            ids[i] = contentUri.substring(contentUri.lastIndexOf('/') + 1);
+            selection.append(i == 0 ? "?" : ",?");
+        }
+        selection.append(')');
+
+        Cursor cursor = resolver.query(Uri.parse(collection), BATCH_PROJECTION, selection.toString(), ids, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(1);
+                if (path == null) {
+                    continue;
+                }
+                String contentUri = collection + "/" + cursor.getLong(0);
+                if (result.containsKey(contentUri)) {
+                    result.put(contentUri, path);
+                    paths.put(contentUri, path);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // content://<authority>/.../<numeric id>
+    private static boolean isItemUri(String contentUri) {
+        String prefix = ContentResolver.SCHEME_CONTENT + "://";
+        if (!contentUri.startsWith(prefix)) {
+            return false;
+        }
+        int slash = contentUri.lastIndexOf('/');
+        if (slash <= prefix.length() || slash == contentUri.length() - 1) {
+            return false;
+        }
+        for (int i = slash + 1; i < contentUri.length(); i++) {
+            if (!Character.isDigit(contentUri.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
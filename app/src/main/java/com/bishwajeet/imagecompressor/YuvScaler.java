@@ -0,0 +1,151 @@
+package com.bishwajeet.imagecompressor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Scales and rotates YUV 4:2:0 frames without converting them to RGB. Each of the three planes is box filtered
+ * on its own straight into an NV21 buffer laid out for the rotated frame, so camera frames can be handed to the
+ * JPEG encoder at their final size and orientation.
+ * <p>
+ * The class has no Android dependencies.
+ */
+final class YuvScaler {
+
+    /**
+     * One plane of a source frame, addressed like the planes of {@code android.media.Image}.
+     */
+    static final class Plane {
+        final ByteBuffer buffer;
+        final int offset;
+        final int rowStride;
+        final int pixelStride;
+
+        Plane(ByteBuffer buffer, int offset, int rowStride, int pixelStride) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.rowStride = rowStride;
+            this.pixelStride = pixelStride;
+        }
+    }
+
+    private YuvScaler() {
+    }
+
+    /**
+     * Describes the planes of an NV21 buffer: full-resolution luma followed by interleaved V and U samples at half
+     * resolution.
+     *
+     * @return the Y, U and V planes
+     */
+    static Plane[] nv21Planes(byte[] nv21, int width, int height) {
+        ByteBuffer buffer = ByteBuffer.wrap(nv21);
+        int chromaStart = width * height;
+        int chromaRowStride = (width + 1) / 2 * 2;
+        return new Plane[]{
+                new Plane(buffer, 0, width, 1),
+                new Plane(buffer, chromaStart + 1, chromaRowStride, 2),
+                new Plane(buffer, chromaStart, chromaRowStride, 2)};
+    }
+
+    /**
+     * Scales a frame to {@code targetWidth} x {@code targetHeight} and rotates it clockwise by
+     * {@code rotationDegrees}.
+     *
+     * @param planes          Y, U and V planes of the source
+     * @param width           width of the source
+     * @param height          height of the source
+     * @param targetWidth     width of the scaled frame before rotation, even
+     * @param targetHeight    height of the scaled frame before rotation, even
+     * @param rotationDegrees 0, 90, 180 or 270
+     * @return the rotated frame in NV21
+     */
+    static byte[] toNv21(Plane[] planes, int width, int height, int targetWidth, int targetHeight,
+                         int rotationDegrees) {
+        if ((targetWidth & 1) != 0 || (targetHeight & 1) != 0) {
+            throw new IllegalArgumentException("NV21 needs an even size, got " + targetWidth + "x" + targetHeight);
+        }
+        boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+        int outputWidth = swap ? targetHeight : targetWidth;
+        int outputHeight = swap ? targetWidth : targetHeight;
+        byte[] nv21 = new byte[outputWidth * outputHeight * 3 / 2];
+
+        scalePlane(planes[0], width, height, nv21, 0, outputWidth, 1, targetWidth, targetHeight,
+                rotationDegrees);
+
+        int chromaStart = outputWidth * outputHeight;
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        scalePlane(planes[2], chromaWidth, chromaHeight, nv21, chromaStart, outputWidth, 2, targetWidth / 2,
+                targetHeight / 2, rotationDegrees);
+        scalePlane(planes[1], chromaWidth, chromaHeight, nv21, chromaStart + 1, outputWidth, 2, targetWidth / 2,
+                targetHeight / 2, rotationDegrees);
+        return nv21;
+    }
+
+    /**
+     * Box filters one plane: every output sample is the mean of the source samples in the block it covers, and is
+     * stored at its rotated position.
+     */
+    private static void scalePlane(Plane source, int width, int height, byte[] output, int outputOffset,
+                                   int outputRowStride, int outputPixelStride, int targetWidth, int targetHeight,
+                                   int rotationDegrees) {
+        int[] columns = boxBounds(width, targetWidth);
+        int[] rows = boxBounds(height, targetHeight);
+        ByteBuffer buffer = source.buffer;
+
+        for (int y = 0; y < targetHeight; y++) {
+            int top = rows[y];
+            int bottom = Math.max(top + 1, rows[y + 1]);
+            for (int x = 0; x < targetWidth; x++) {
+                int left = columns[x];
+                int right = Math.max(left + 1, columns[x + 1]);
+
+                int sum = 0;
+                for (int sy = top; sy < bottom; sy++) {
+                    int index = source.offset + sy * source.rowStride + left * source.pixelStride;
+                    for (int sx = left; sx < right; sx++) {
+                        sum += buffer.get(index) & 0xFF;
+                        index += source.pixelStride;
+                    }
+                }
+                int count = (bottom - top) * (right - left);
+
+//              map the sample to its rotated position
+                int u;
+                int v;
+                switch (rotationDegrees) {
+                    case 90:
+                        u = targetHeight - 1 - y;
+                        v = x;
+                        break;
+                    case 180:
+                        u = targetWidth - 1 - x;
+                        v = targetHeight - 1 - y;
+                        break;
+                    case 270:
+                        u = y;
+                        v = targetWidth - 1 - x;
+                        break;
+                    default:
+                        u = x;
+                        v = y;
+                        break;
+                }
+                output[outputOffset + v * outputRowStride + u * outputPixelStride] =
+                        (byte) ((sum + count / 2) / count);
+            }
+        }
+    }
+
+    /**
+     * @return the first source index of each of the {@code target} blocks followed by {@code size}; a block that
+     * would be empty when enlarging still takes its first sample
+     */
+    private static int[] boxBounds(int size, int target) {
+        int[] bounds = new int[target + 1];
+        for (int i = 0; i <= target; i++) {
+            bounds[i] = (int) ((long) i * size / target);
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,34 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ByteSinkTest {
+
+    @Test
+    public void reusesSinksUpToTheCap() {
+        ByteSink sink = ByteSink.obtain();
+        sink.write(new byte[ByteSink.MAX_POOLED_CAPACITY], 0, ByteSink.MAX_POOLED_CAPACITY);
+        assertEquals(ByteSink.MAX_POOLED_CAPACITY, sink.buffer().length);
+        sink.recycle();
+
+        ByteSink reused = ByteSink.obtain();
+        assertSame(sink, reused);
+        assertEquals(0, reused.size());
+        reused.recycle();
+    }
+
+    @Test
+    public void dropsSinksThatGrewPastTheCap() {
+        ByteSink sink = ByteSink.obtain();
+        sink.write(new byte[ByteSink.MAX_POOLED_CAPACITY + 1], 0, ByteSink.MAX_POOLED_CAPACITY + 1);
+        sink.recycle();
+
+        ByteSink next = ByteSink.obtain();
+        assertNotSame(sink, next);
+        next.recycle();
+    }
+}
@@ -0,0 +1,205 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressionExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private CompressionExecutor executor;
+    private final List<String> runs = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws InterruptedException {
+        executor = new CompressionExecutor(1, "test");
+        // occupies the only worker so that everything submitted afterwards queues
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.submit(CompressionExecutor.Priority.USER_VISIBLE, new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                started.countDown();
+                release.await();
+                return null;
+            }
+        });
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void runsUserVisibleWorkFirstAndInOrderWithinAPriority() throws Exception {
+        List<Future<String>> futures = new ArrayList<>();
+        futures.add(submit(null, CompressionExecutor.Priority.BACKGROUND, "b1"));
+        futures.add(submit(null, CompressionExecutor.Priority.USER_VISIBLE, "u1"));
+        futures.add(submit(null, CompressionExecutor.Priority.BACKGROUND, "b2"));
+        futures.add(submit(null, CompressionExecutor.Priority.USER_VISIBLE, "u2"));
+        release.countDown();
+        awaitAll(futures);
+
+        assertEquals(Arrays.asList("u1", "u2", "b1", "b2"), runs);
+    }
+
+    @Test
+    public void raisesQueuedCoalescedJobToTheHigherPriority() throws Exception {
+        Future<String> background = submit("a", CompressionExecutor.Priority.BACKGROUND, "a");
+        Future<String> other = submit(null, CompressionExecutor.Priority.BACKGROUND, "b");
+        Future<String> visible = submit(null, CompressionExecutor.Priority.USER_VISIBLE, "c");
+        Future<String> raised = submit("a", CompressionExecutor.Priority.USER_VISIBLE, "a again");
+        release.countDown();
+        awaitAll(Arrays.asList(background, other, visible, raised));
+
+        // keeps its place among user-visible work by submission order
+        assertEquals(Arrays.asList("a", "c", "b"), runs);
+        assertEquals("a", raised.get());
+    }
+
+    @Test
+    public void coalescesSubmissionsWithTheSameKey() throws Exception {
+        final AtomicInteger listened = new AtomicInteger();
+        CompressionExecutor.Listener<String> listener = new CompressionExecutor.Listener<String>() {
+            @Override
+            public void onDone(Future<String> future) {
+                listened.incrementAndGet();
+            }
+        };
+        Future<String> first = executor.submit("k", CompressionExecutor.Priority.BACKGROUND, job("first"),
+                listener);
+        Future<String> second = executor.submit("k", CompressionExecutor.Priority.BACKGROUND, job("second"),
+                listener);
+        Future<String> third = executor.submit("k", CompressionExecutor.Priority.USER_VISIBLE, job("third"),
+                listener);
+        release.countDown();
+
+        assertEquals("first", first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("first", second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("first", third.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("first"), runs);
+        assertEquals(3, listened.get());
+    }
+
+    @Test
+    public void cancelsSharedJobOnlyOnceEverySubmitterCancelled() throws Exception {
+        Future<String> first = submit("k", CompressionExecutor.Priority.BACKGROUND, "shared");
+        Future<String> second = submit("k", CompressionExecutor.Priority.BACKGROUND, "shared");
+        assertTrue(first.cancel(false));
+        assertTrue(first.isCancelled());
+        assertFalse(second.isCancelled());
+        release.countDown();
+
+        assertEquals("shared", second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("shared"), runs);
+        try {
+            first.get();
+            fail();
+        } catch (CancellationException expected) {
+            // the cancelled submission does not see the result
+        }
+    }
+
+    @Test
+    public void dropsJobWhenEverySubmitterCancelled() throws Exception {
+        Future<String> first = submit("k", CompressionExecutor.Priority.BACKGROUND, "dropped");
+        Future<String> second = submit("k", CompressionExecutor.Priority.BACKGROUND, "dropped");
+        assertTrue(first.cancel(false));
+        assertTrue(second.cancel(false));
+        assertEquals(0, executor.getQueuedCount());
+
+        // the key is free again for new work
+        Future<String> fresh = submit("k", CompressionExecutor.Priority.BACKGROUND, "fresh");
+        release.countDown();
+        assertEquals("fresh", fresh.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("fresh"), runs);
+    }
+
+    @Test
+    public void throwIfCancelledStopsTheRunningJob() throws Exception {
+        release.countDown();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        Future<Void> future = executor.submit(CompressionExecutor.Priority.USER_VISIBLE, new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                started.countDown();
+                try {
+                    while (true) {
+                        CompressionExecutor.throwIfCancelled();
+                        Thread.sleep(1);
+                    }
+                } catch (CancellationException e) {
+                    stopped.countDown();
+                    throw e;
+                }
+            }
+        });
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        assertTrue(stopped.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void throwIfCancelledDoesNothingOutsideAJob() {
+        CompressionExecutor.throwIfCancelled();
+    }
+
+    @Test
+    public void runBandsCoversTheRangeOnce() {
+        release.countDown();
+        final AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+        executor.runBands(0, visits.length(), 4, 10, new CompressionExecutor.Band() {
+            @Override
+            public void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    visits.incrementAndGet(i);
+                }
+            }
+        });
+        for (int i = 0; i < visits.length(); i++) {
+            assertEquals(1, visits.get(i));
+        }
+    }
+
+    private Future<String> submit(String key, CompressionExecutor.Priority priority, String name) {
+        return executor.submit(key, priority, job(name), null);
+    }
+
+    private Callable<String> job(final String name) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                runs.add(name);
+                return name;
+            }
+        };
+    }
+
+    private static void awaitAll(List<Future<String>> futures) throws Exception {
+        for (Future<String> future : futures) {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
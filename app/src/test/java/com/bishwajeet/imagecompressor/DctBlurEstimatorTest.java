@@ -0,0 +1,238 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DctBlurEstimatorTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final double THRESHOLD = DctBlurEstimator.DEFAULT_THRESHOLD;
+
+    // Gaussian deviations in pixels, from a sharp photo to a missed focus
+    private static final double[] SIGMAS = {0, 0.5, 1, 1.5, 2, 3, 4};
+
+    private static final float[] QUALITIES = {0.95f, 0.8f, 0.6f};
+
+    @Test
+    public void scoresTheSharpReferenceAsSharp() throws IOException {
+        for (byte[] scene : scenes()) {
+            for (float quality : QUALITIES) {
+                BlurScore score = estimate(jpeg(scene, quality, false));
+                assertFalse(score.toString(), score.isBlurry());
+                assertTrue(score.toString(), score.getConfidence() > 0.5);
+            }
+        }
+    }
+
+    @Test
+    public void scoresTheBlurredReferenceAsBlurry() throws IOException {
+        for (byte[] scene : scenes()) {
+            for (float quality : QUALITIES) {
+                BlurScore score = estimate(jpeg(blur(scene, 3), quality, false));
+                assertTrue(score.toString(), score.isBlurry());
+            }
+        }
+    }
+
+    /**
+     * A Gaussian, like defocus, attenuates every frequency more as it widens, so the high band loses share at
+     * every step. Once far below the threshold the few remaining high coefficients are quantization noise, and
+     * the score only has to stay there.
+     */
+    @Test
+    public void scoreFallsAsBlurGrows() throws IOException {
+        for (byte[] scene : scenes()) {
+            for (float quality : QUALITIES) {
+                double previous = Double.MAX_VALUE;
+                StringBuilder scores = new StringBuilder("q" + quality + ":");
+                for (double sigma : SIGMAS) {
+                    double score = estimate(jpeg(blur(scene, sigma), quality, false)).getScore();
+                    scores.append(' ').append(score);
+                    if (previous >= THRESHOLD / 4) {
+                        assertTrue(scores.toString(), score < previous);
+                    } else {
+                        assertTrue(scores.toString(), score < THRESHOLD);
+                    }
+                    previous = score;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void leavesProgressiveFilesToTheCaller() throws IOException {
+        assertNull(DctBlurEstimator.get().estimate(
+                new ByteArrayInputStream(jpeg(scenes()[0], 0.8f, true)), THRESHOLD));
+    }
+
+    @Test
+    public void rejectsOverfullHuffmanTable() {
+        byte[] jpeg = jpeg(scenes()[0], 0.8f, false);
+        int table = indexOfMarker(jpeg, 0xC4) + 5;
+        // three codes of one bit
+        jpeg[table] = 3;
+        try {
+            estimate(jpeg);
+            fail();
+        } catch (IOException expected) {
+            // the table would have indexed past the lookup
+        }
+    }
+
+    @Test
+    public void survivesCorruptFiles() {
+        byte[] jpeg = jpeg(blur(scenes()[1], 1), 0.8f, false);
+        int scan = indexOfMarker(jpeg, 0xDA);
+        Random random = new Random(21);
+        for (int i = 0; i < 2000; i++) {
+            byte[] corrupt = Arrays.copyOf(jpeg, jpeg.length);
+            // mostly the headers and tables, some entropy-coded data
+            int end = i % 4 == 0 ? corrupt.length : scan + 16;
+            for (int flips = 1 + random.nextInt(4); flips > 0; flips--) {
+                corrupt[2 + random.nextInt(end - 2)] = (byte) random.nextInt(256);
+            }
+            if (i % 8 == 0) {
+                corrupt = Arrays.copyOf(corrupt, 2 + random.nextInt(corrupt.length - 2));
+            }
+            try {
+                DctBlurEstimator.get().estimate(new ByteArrayInputStream(corrupt), THRESHOLD);
+            } catch (IOException expected) {
+                // corrupt headers are reported, corrupt data is scored as far as it goes
+            } catch (RuntimeException e) {
+                throw new AssertionError("Mutation " + i + " escaped with " + e, e);
+            }
+        }
+    }
+
+    private static BlurScore estimate(byte[] jpeg) throws IOException {
+        BlurScore score = DctBlurEstimator.get().estimate(new ByteArrayInputStream(jpeg), THRESHOLD);
+        assertNotNull(score);
+        return score;
+    }
+
+    /**
+     * Reference photos: the textured gradient of {@link SsimTest} with sensor noise, and discs of random size and
+     * grey level on a dark background.
+     */
+    private static byte[][] scenes() {
+        byte[] discs = new byte[WIDTH * HEIGHT];
+        Arrays.fill(discs, (byte) 30);
+        Random random = new Random(7);
+        for (int i = 0; i < 40; i++) {
+            int cx = random.nextInt(WIDTH);
+            int cy = random.nextInt(HEIGHT);
+            int radius = 5 + random.nextInt(60);
+            byte value = (byte) random.nextInt(256);
+            for (int y = Math.max(0, cy - radius); y < Math.min(HEIGHT, cy + radius); y++) {
+                for (int x = Math.max(0, cx - radius); x < Math.min(WIDTH, cx + radius); x++) {
+                    if ((x - cx) * (x - cx) + (y - cy) * (y - cy) < radius * radius) {
+                        discs[y * WIDTH + x] = value;
+                    }
+                }
+            }
+        }
+        return new byte[][]{SsimTest.scene(WIDTH, HEIGHT, 2), discs};
+    }
+
+    /**
+     * Separable Gaussian blur with clamped edges.
+     */
+    private static byte[] blur(byte[] luma, double sigma) {
+        if (sigma == 0) {
+            return luma;
+        }
+        int radius = (int) Math.ceil(sigma * 3);
+        double[] kernel = new double[2 * radius + 1];
+        double total = 0;
+        for (int i = -radius; i <= radius; i++) {
+            kernel[i + radius] = Math.exp(-i * i / (2 * sigma * sigma));
+            total += kernel[i + radius];
+        }
+        double[] rows = new double[luma.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double sum = 0;
+                for (int i = -radius; i <= radius; i++) {
+                    sum += kernel[i + radius] * (luma[y * WIDTH + Math.max(0, Math.min(WIDTH - 1, x + i))] & 0xFF);
+                }
+                rows[y * WIDTH + x] = sum / total;
+            }
+        }
+        byte[] out = new byte[luma.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double sum = 0;
+                for (int i = -radius; i <= radius; i++) {
+                    sum += kernel[i + radius] * rows[Math.max(0, Math.min(HEIGHT - 1, y + i)) * WIDTH + x];
+                }
+                out[y * WIDTH + x] = (byte) Math.round(sum / total);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Encodes a colour image whose luma is the given plane, with the JDK's libjpeg-based writer and its default
+     * 4:2:0 sub-sampling.
+     */
+    private static byte[] jpeg(byte[] luma, float quality, boolean progressive) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int value = luma[y * WIDTH + x] & 0xFF;
+                image.setRGB(x, y, value << 16 | value << 8 | (255 - value) / 4 + value / 2);
+            }
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes);
+            try {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (progressive) {
+                    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                } else {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    param.setCompressionQuality(quality);
+                }
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int indexOfMarker(byte[] data, int marker) {
+        for (int i = 0; i < data.length - 1; i++) {
+            if ((data[i] & 0xFF) == 0xFF && (data[i + 1] & 0xFF) == marker) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
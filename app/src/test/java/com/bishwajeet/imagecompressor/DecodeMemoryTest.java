@@ -0,0 +1,240 @@
+package com.bishwajeet.imagecompressor;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.media.ExifInterface;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the pixel buffers that are live at once while {@link Compressor} decodes, scales and rotates an image.
+ * Every bitmap comes from the pool or from the decoder of the source, and goes back through the pool, so both
+ * record what they hand out and take back. The source decodes to the size the platform decoder would return for
+ * the options it is given.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class DecodeMemoryTest {
+
+    // 12, 24, 48 and 64 MP camera sensors
+    private static final int[][] CAMERA_SIZES = {{4000, 3000}, {6000, 4000}, {8000, 6000}, {9248, 6936}};
+
+    private static final int[] ORIENTATIONS = {ExifInterface.ORIENTATION_NORMAL, ExifInterface.ORIENTATION_ROTATE_90,
+            ExifInterface.ORIENTATION_ROTATE_180, ExifInterface.ORIENTATION_TRANSVERSE};
+
+    private CountingPool pool;
+    private Compressor compressor;
+
+    @Before
+    public void setUp() {
+        // nothing is kept for reuse, so every call starts from an empty pool
+        pool = new CountingPool();
+        compressor = new Compressor(RuntimeEnvironment.application, pool, Long.MAX_VALUE,
+                Compressor.Builder.DEFAULT_SIMILARITY_THRESHOLD, Compressor.Builder.DEFAULT_PATH_CACHE_SIZE,
+                Long.MAX_VALUE, 0, null);
+    }
+
+    @After
+    public void tearDown() {
+        compressor.getExecutor().shutdown();
+    }
+
+    @Test
+    public void holdsTheDecodeAndTheOutputAtMost() {
+        for (int[] size : CAMERA_SIZES) {
+            for (int turn = 0; turn < 2; turn++) {
+                for (int orientation : ORIENTATIONS) {
+                    int width = size[turn];
+                    int height = size[1 - turn];
+                    int[] target = DecodePlannerTest.fitDefault(width, height);
+                    DecodePlanner.Plan plan = DecodePlanner.plan(width, height, target[0], target[1]);
+                    boolean rotated = orientation > ExifInterface.ORIENTATION_NORMAL;
+                    String label = width + "x" + height + " orientation " + orientation + ": " + plan;
+
+                    Bitmap output = decode(width, height, orientation);
+                    assertNotNull(label, output);
+                    assertEquals(label, Compressor.outputWidth(orientation, target[0], target[1]),
+                            output.getWidth());
+                    assertEquals(label, Compressor.outputHeight(orientation, target[0], target[1]),
+                            output.getHeight());
+
+                    long outputBytes = (long) target[0] * target[1] * 4;
+                    long decodedBytes = (long) plan.width * plan.height * 4;
+                    if (plan.exact && !rotated) {
+                        // the decode is the output
+                        assertEquals(label, 1, pool.peakCount);
+                        assertEquals(label, outputBytes, pool.peakBytes);
+                    } else {
+                        // the decode is drawn straight into the output, with no scaled copy in between
+                        assertEquals(label, 2, pool.peakCount);
+                        assertEquals(label, decodedBytes + outputBytes, pool.peakBytes);
+                    }
+                    assertEquals(label, DecodePlanner.peakBytes(plan, target[0], target[1], rotated),
+                            pool.peakBytes);
+                    assertTrue(label, pool.peakBytes < (long) width * height * 4 / 2);
+
+                    // only the output is left for the caller
+                    assertEquals(label, 1, pool.live.size());
+                    pool.put(output);
+                    assertTrue(label, pool.live.isEmpty());
+                    pool.reset();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reservesTheResamplerBuffers() {
+        compressor.getExecutor().shutdown();
+        compressor = new Compressor(RuntimeEnvironment.application, pool, Long.MAX_VALUE,
+                Compressor.Builder.DEFAULT_SIMILARITY_THRESHOLD, Compressor.Builder.DEFAULT_PATH_CACHE_SIZE,
+                Long.MAX_VALUE, 0, Resampler.Filter.AREA);
+        for (int[] size : CAMERA_SIZES) {
+            for (int orientation : ORIENTATIONS) {
+                int width = size[0];
+                int height = size[1];
+                int[] target = DecodePlannerTest.fitDefault(width, height);
+                DecodePlanner.Plan plan = DecodePlanner.plan(width, height, target[0], target[1]);
+                int sampledWidth = DecodePlanner.sampledSize(width, plan.sampleSize);
+                int sampledHeight = DecodePlanner.sampledSize(height, plan.sampleSize);
+                boolean rotated = orientation > ExifInterface.ORIENTATION_NORMAL;
+                String label = width + "x" + height + " orientation " + orientation + ": " + plan;
+
+                Bitmap output = decode(width, height, orientation);
+                assertNotNull(label, output);
+                long decodedBytes = (long) sampledWidth * sampledHeight * 4;
+                long outputBytes = (long) target[0] * target[1] * 4;
+                // the sub-sampled decode and the resampled bitmap, and the upright output when the image turns
+                assertEquals(label, rotated ? 3 : 2, pool.peakCount);
+                assertEquals(label, decodedBytes + (rotated ? 2 : 1) * outputBytes, pool.peakBytes);
+
+                // the resampler copies both bitmaps to arrays and keeps an intermediate plane
+                long arrayBytes = decodedBytes + outputBytes + (long) target[0] * sampledHeight * 4;
+                long estimate = DecodePlanner.resampledPeakBytes(sampledWidth, sampledHeight, target[0], target[1],
+                        rotated);
+                assertTrue(label, estimate >= decodedBytes + outputBytes + arrayBytes);
+                assertTrue(label, estimate >= pool.peakBytes);
+                assertTrue(label, estimate > DecodePlanner.peakBytes(plan, target[0], target[1], rotated));
+
+                pool.put(output);
+                pool.reset();
+            }
+        }
+    }
+
+    private Bitmap decode(int width, int height, int orientation) {
+        ImageHeader header = new ImageHeader();
+        header.jpeg = true;
+        header.width = width;
+        header.height = height;
+        header.orientation = orientation;
+        return compressor.decodeScaledBitmap(new SizedSource(width, height, pool), header);
+    }
+
+    /**
+     * A pool that keeps nothing and records the bitmaps handed out and not yet handed back.
+     */
+    private static class CountingPool extends BitmapPool {
+        final Map<Bitmap, Long> live = new IdentityHashMap<>();
+        long liveBytes;
+        long peakBytes;
+        int peakCount;
+
+        CountingPool() {
+            super(0);
+        }
+
+        @Override
+        public Bitmap getOrCreate(int width, int height, Bitmap.Config config) {
+            return track(super.getOrCreate(width, height, config));
+        }
+
+        @Override
+        public synchronized Bitmap getForDecode(int width, int height, Bitmap.Config config, int inSampleSize) {
+            return track(super.getForDecode(width, height, config, inSampleSize));
+        }
+
+        @Override
+        public synchronized void put(Bitmap bitmap) {
+            Long bytes = live.remove(bitmap);
+            if (bytes != null) {
+                liveBytes -= bytes;
+            }
+            super.put(bitmap);
+        }
+
+        synchronized Bitmap track(Bitmap bitmap) {
+            if (bitmap != null && !live.containsKey(bitmap)) {
+                long bytes = (long) bitmap.getWidth() * bitmap.getHeight() * 4;
+                live.put(bitmap, bytes);
+                liveBytes += bytes;
+                peakBytes = Math.max(peakBytes, liveBytes);
+                peakCount = Math.max(peakCount, live.size());
+            }
+            return bitmap;
+        }
+
+        synchronized void reset() {
+            peakBytes = liveBytes;
+            peakCount = live.size();
+        }
+    }
+
+    /**
+     * Decodes to the size the platform decoder returns for the sample size and densities of the options.
+     */
+    private static class SizedSource extends ImageSource {
+        private final int width;
+        private final int height;
+        private final CountingPool pool;
+
+        SizedSource(int width, int height, CountingPool pool) {
+            this.width = width;
+            this.height = height;
+            this.pool = pool;
+        }
+
+        @Override
+        Bitmap decode(BitmapFactory.Options options) throws IOException {
+            options.outWidth = width;
+            options.outHeight = height;
+            if (options.inJustDecodeBounds) {
+                return null;
+            }
+            int sampleSize = Math.max(1, options.inSampleSize);
+            int decodedWidth = DecodePlanner.sampledSize(width, sampleSize);
+            int decodedHeight = DecodePlanner.sampledSize(height, sampleSize);
+            if (options.inScaled && options.inDensity != 0 && options.inTargetDensity != 0) {
+                decodedWidth = DecodePlanner.scaledSize(decodedWidth, options.inDensity, options.inTargetDensity);
+                decodedHeight = DecodePlanner.scaledSize(decodedHeight, options.inDensity, options.inTargetDensity);
+            }
+            return pool.track(Bitmap.createBitmap(decodedWidth, decodedHeight, Bitmap.Config.ARGB_8888));
+        }
+
+        @Override
+        BitmapRegionDecoder newRegionDecoder() throws IOException {
+            throw new IOException("No region decoder");
+        }
+
+        @Override
+        InputStream openStream() throws IOException {
+            throw new IOException("No encoded bytes");
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecodePlannerTest {
+
+    // 12, 24, 48 and 64 MP camera sensors
+    private static final int[][] CAMERA_SIZES = {{4000, 3000}, {6000, 4000}, {8000, 6000}, {9248, 6936}};
+
+    @Test
+    public void exactUprightDecodeIsTheOutput() {
+        for (int[] size : CAMERA_SIZES) {
+            int[] target = fitDefault(size[0], size[1]);
+            DecodePlanner.Plan plan = DecodePlanner.plan(size[0], size[1], target[0], target[1]);
+            assertTrue(plan.toString(), plan.exact);
+            assertEquals((long) target[0] * target[1] * 4,
+                    DecodePlanner.peakBytes(plan, target[0], target[1], false));
+        }
+    }
+
+    @Test
+    public void inexactDecodeIsDrawnIntoTheOutput() {
+        DecodePlanner.Plan plan = new DecodePlanner.Plan(2, 0, 0, 2000, 1500, false);
+        assertEquals(2000L * 1500 * 4 + 1716L * 1287 * 4, DecodePlanner.peakBytes(plan, 1716, 1287, false));
+    }
+
+    @Test
+    public void plansReproduceTheTargetAcrossAGrid() {
+        for (int width = 97; width <= 9500; width += 157) {
+            for (int height = 89; height <= 9500; height += 211) {
+                int[] fitted = fitDefault(width, height);
+                int[][] targets = {fitted, {Math.max(1, width / 3), Math.max(1, height / 3)},
+                        {Math.max(1, width * 5 / 7), Math.max(1, (height * 5 + 6) / 7)}};
+                for (int[] target : targets) {
+                    if (target[0] > width || target[1] > height || target[0] < 1 || target[1] < 1) {
+                        continue;
+                    }
+                    DecodePlanner.Plan plan = DecodePlanner.plan(width, height, target[0], target[1]);
+                    String label = width + "x" + height + " to " + target[0] + "x" + target[1] + ": " + plan;
+                    assertEquals(label, 0, plan.sampleSize & (plan.sampleSize - 1));
+                    int sampledWidth = DecodePlanner.sampledSize(width, plan.sampleSize);
+                    int sampledHeight = DecodePlanner.sampledSize(height, plan.sampleSize);
+                    assertTrue(label, sampledWidth >= target[0] && sampledHeight >= target[1]);
+                    assertFalse(label, DecodePlanner.sampledSize(width, plan.sampleSize * 2) >= target[0]
+                            && DecodePlanner.sampledSize(height, plan.sampleSize * 2) >= target[1]);
+
+                    if (plan.exact) {
+                        int decodedWidth = plan.isScaled() ? DecodePlanner.scaledSize(sampledWidth, plan.density,
+                                plan.targetDensity) : sampledWidth;
+                        int decodedHeight = plan.isScaled() ? DecodePlanner.scaledSize(sampledHeight, plan.density,
+                                plan.targetDensity) : sampledHeight;
+                        assertEquals(label, target[0], decodedWidth);
+                        assertEquals(label, target[1], decodedHeight);
+                        assertEquals(label, target[0], plan.width);
+                        assertEquals(label, target[1], plan.height);
+                    } else {
+                        // only when no single scale rounds the sampled size to the target on both axes
+                        double low = Math.max((target[0] - 0.5) / sampledWidth, (target[1] - 0.5) / sampledHeight);
+                        double high = Math.min((target[0] + 0.5) / sampledWidth,
+                                (target[1] + 0.5) / sampledHeight);
+                        assertTrue(label, low >= high);
+                        // sample only, and the caller scales the rest of the way
+                        assertEquals(label, 0, plan.density);
+                        assertEquals(label, 0, plan.targetDensity);
+                        assertEquals(label, sampledWidth, plan.width);
+                        assertEquals(label, sampledHeight, plan.height);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The default target size of {@link Compressor}: 1795 x 1287 turned to match the image, filled on the side
+     * whose ratio to the box is the smaller one, as the compressor has always done.
+     */
+    static int[] fitDefault(int width, int height) {
+        float maxWidth = width > height ? 1795f : width < height ? 1287f : 1795f;
+        float maxHeight = width > height ? 1287f : 1795f;
+        float ratio = height / (float) width;
+        float heightRatio = height / maxHeight;
+        float widthRatio = width / maxWidth;
+        if (heightRatio > widthRatio) {
+            return new int[]{(int) maxWidth, (int) (maxWidth * ratio)};
+        } else if (heightRatio < widthRatio) {
+            return new int[]{(int) (maxHeight / ratio), (int) maxHeight};
+        }
+        return new int[]{(int) maxWidth, (int) maxHeight};
+    }
+}
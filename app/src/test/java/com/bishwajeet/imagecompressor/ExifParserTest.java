@@ -0,0 +1,274 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExifParserTest {
+
+    private static final int WIDTH = 4032;
+    private static final int HEIGHT = 3024;
+    private static final int THUMBNAIL_WIDTH = 160;
+    private static final int THUMBNAIL_HEIGHT = 120;
+
+    @Test
+    public void readsEveryOrientationInBothByteOrders() throws IOException {
+        for (boolean littleEndian : new boolean[]{true, false}) {
+            for (int orientation = 1; orientation <= 8; orientation++) {
+                ImageHeader header = parse(jpeg(exif(littleEndian, orientation, null)));
+                String label = (littleEndian ? "II " : "MM ") + orientation;
+                assertTrue(label, header.jpeg);
+                assertEquals(label, orientation, header.orientation);
+                assertEquals(label, WIDTH, header.width);
+                assertEquals(label, HEIGHT, header.height);
+                assertFalse(label, header.hasThumbnail());
+            }
+        }
+    }
+
+    @Test
+    public void ignoresOrientationsOutOfRange() throws IOException {
+        for (boolean littleEndian : new boolean[]{true, false}) {
+            for (int orientation : new int[]{0, 9, 65535}) {
+                ImageHeader header = parse(jpeg(exif(littleEndian, orientation, null)));
+                String label = (littleEndian ? "II " : "MM ") + orientation;
+                assertEquals(label, 0, header.orientation);
+                assertEquals(label, WIDTH, header.width);
+                assertEquals(label, HEIGHT, header.height);
+            }
+        }
+    }
+
+    @Test
+    public void findsTheThumbnailInBothByteOrders() throws IOException {
+        byte[] thumbnail = thumbnail();
+        for (boolean littleEndian : new boolean[]{true, false}) {
+            byte[] jpeg = jpeg(exif(littleEndian, 6, thumbnail));
+            ImageHeader header = parse(jpeg);
+            assertEquals(6, header.orientation);
+            assertTrue(header.hasThumbnail());
+            assertEquals(THUMBNAIL_WIDTH, header.thumbnailWidth);
+            assertEquals(THUMBNAIL_HEIGHT, header.thumbnailHeight);
+            assertEquals(thumbnail.length, header.thumbnailLength);
+            // the offset is absolute in the file, so the thumbnail can be read without parsing again
+            int offset = (int) header.thumbnailOffset;
+            assertTrue(Arrays.equals(thumbnail, Arrays.copyOfRange(jpeg, offset, offset + thumbnail.length)));
+        }
+    }
+
+    @Test
+    public void dropsThumbnailPointingOutsideTheSegment() throws IOException {
+        byte[] segment = exif(true, 1, thumbnail());
+        // the value of the second entry of IFD1, the thumbnail length, after the marker, length and "Exif\0\0"
+        int lengthValue = 4 + 6 + (8 + 2 + 12 + 4) + 2 + 12 + 8;
+        segment[lengthValue + 1] = (byte) 0x7F;
+        ImageHeader header = parse(jpeg(segment));
+        assertEquals(1, header.orientation);
+        assertFalse(header.hasThumbnail());
+        assertEquals(-1, header.thumbnailOffset);
+    }
+
+    @Test
+    public void readsSizeWithoutExif() throws IOException {
+        ImageHeader header = parse(jpeg());
+        assertTrue(header.jpeg);
+        assertEquals(0, header.orientation);
+        assertEquals(WIDTH, header.width);
+        assertEquals(HEIGHT, header.height);
+    }
+
+    @Test
+    public void skipsXmpBeforeExif() throws IOException {
+        byte[] xmp = segment(0xE1, "http://ns.adobe.com/xap/1.0/\0<x:xmpmeta/>".getBytes("US-ASCII"));
+        ImageHeader header = parse(jpeg(jfif(), xmp, exif(false, 3, null)));
+        assertEquals(3, header.orientation);
+        assertEquals(WIDTH, header.width);
+    }
+
+    @Test
+    public void leavesOtherFormatsUnknown() throws IOException {
+        ImageHeader header = parse(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13});
+        assertFalse(header.jpeg);
+        assertFalse(header.hasSize());
+    }
+
+    @Test
+    public void stopsAtTheFrameHeader() throws IOException {
+        byte[] jpeg = jpeg(exif(true, 8, thumbnail()));
+        ByteArrayInputStream in = new ByteArrayInputStream(jpeg);
+        ExifParser.get().parse(in, new ImageHeader());
+        int frameEnd = lastIndexOfMarker(jpeg, 0xC0) + 4 + 5;
+        assertEquals(frameEnd, jpeg.length - in.available());
+    }
+
+    @Test
+    public void failsOnTruncatedSegment() {
+        byte[] jpeg = jpeg(exif(true, 6, thumbnail()));
+        try {
+            parse(Arrays.copyOf(jpeg, 40));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e instanceof EOFException);
+        }
+    }
+
+    private static ImageHeader parse(byte[] data) throws IOException {
+        ImageHeader header = new ImageHeader();
+        ExifParser.get().parse(new ByteArrayInputStream(data), header);
+        return header;
+    }
+
+    /**
+     * SOI, the given segments, a baseline frame header of {@link #WIDTH} x {@link #HEIGHT}, and the start of the
+     * scan.
+     */
+    private static byte[] jpeg(byte[]... segments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        for (byte[] segment : segments) {
+            out.write(segment, 0, segment.length);
+        }
+        byte[] frame = frame(WIDTH, HEIGHT);
+        out.write(frame, 0, frame.length);
+        byte[] scan = segment(0xDA, new byte[]{1, 1, 0, 0, 63, 0});
+        out.write(scan, 0, scan.length);
+        // entropy-coded data the parser must not read
+        for (int i = 0; i < 64; i++) {
+            out.write(0x55);
+        }
+        out.write(0xFF);
+        out.write(0xD9);
+        return out.toByteArray();
+    }
+
+    private static byte[] thumbnail() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(0xD8);
+        byte[] app0 = jfif();
+        out.write(app0, 0, app0.length);
+        byte[] frame = frame(THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+        out.write(frame, 0, frame.length);
+        out.write(0xFF);
+        out.write(0xD9);
+        return out.toByteArray();
+    }
+
+    private static byte[] jfif() {
+        return segment(0xE0, new byte[]{'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0});
+    }
+
+    private static byte[] frame(int width, int height) {
+        return segment(0xC0, new byte[]{8, (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width,
+                1, 1, 0x11, 0});
+    }
+
+    /**
+     * An EXIF APP1 segment whose IFD0 holds the orientation, followed by IFD1 and the thumbnail if one is given.
+     */
+    private static byte[] exif(boolean littleEndian, int orientation, byte[] thumbnail) {
+        Tiff tiff = new Tiff(littleEndian);
+        tiff.bytes(littleEndian ? new byte[]{'I', 'I'} : new byte[]{'M', 'M'});
+        tiff.short16(42);
+        tiff.int32(8);
+
+        // IFD0: orientation, then the offset of IFD1
+        tiff.short16(1);
+        tiff.short16(0x0112);
+        tiff.short16(3);
+        tiff.int32(1);
+        tiff.short16(orientation);
+        tiff.short16(0);
+        int ifd1 = 8 + 2 + 12 + 4;
+        tiff.int32(thumbnail != null ? ifd1 : 0);
+
+        if (thumbnail != null) {
+            int data = ifd1 + 2 + 2 * 12 + 4;
+            tiff.short16(2);
+            tiff.short16(0x0201);
+            tiff.short16(4);
+            tiff.int32(1);
+            tiff.int32(data);
+            tiff.short16(0x0202);
+            tiff.short16(4);
+            tiff.int32(1);
+            tiff.int32(thumbnail.length);
+            tiff.int32(0);
+            tiff.bytes(thumbnail);
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write('E');
+        payload.write('x');
+        payload.write('i');
+        payload.write('f');
+        payload.write(0);
+        payload.write(0);
+        byte[] body = tiff.out.toByteArray();
+        payload.write(body, 0, body.length);
+        return segment(0xE1, payload.toByteArray());
+    }
+
+    private static byte[] segment(int marker, byte[] payload) {
+        int length = payload.length + 2;
+        byte[] segment = new byte[payload.length + 4];
+        segment[0] = (byte) 0xFF;
+        segment[1] = (byte) marker;
+        segment[2] = (byte) (length >> 8);
+        segment[3] = (byte) length;
+        System.arraycopy(payload, 0, segment, 4, payload.length);
+        return segment;
+    }
+
+    private static int lastIndexOfMarker(byte[] data, int marker) {
+        for (int i = data.length - 2; i >= 0; i--) {
+            if ((data[i] & 0xFF) == 0xFF && (data[i + 1] & 0xFF) == marker) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Tiff {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final boolean littleEndian;
+
+        Tiff(boolean littleEndian) {
+            this.littleEndian = littleEndian;
+        }
+
+        void bytes(byte[] bytes) {
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void short16(int value) {
+            if (littleEndian) {
+                out.write(value);
+                out.write(value >> 8);
+            } else {
+                out.write(value >> 8);
+                out.write(value);
+            }
+        }
+
+        void int32(int value) {
+            if (littleEndian) {
+                short16(value);
+                short16(value >>> 16);
+            } else {
+                short16(value >>> 16);
+                short16(value);
+            }
+        }
+    }
+}
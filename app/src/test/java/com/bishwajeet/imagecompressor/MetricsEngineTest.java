@@ -0,0 +1,122 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsEngineTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void estimatesAddedNoise() {
+        MetricsEngine engine = MetricsEngine.standard(null, 1);
+        for (double sigma : new double[]{2, 5, 10}) {
+            double estimate = engine.measure(plane(smooth(sigma))).getNoiseSigma();
+            assertEquals(sigma + " estimated as " + estimate, sigma, estimate, sigma * 0.05);
+        }
+    }
+
+    @Test
+    public void ignoresEdgesWhenEstimatingNoise() {
+        byte[] scene = SsimTest.scene(WIDTH, HEIGHT, 0);
+        MetricsReport report = MetricsEngine.standard(null, 1).measure(plane(scene));
+        // the 3 levels of texture grain in the scene, not its hard edges
+        assertEquals(3, report.getNoiseSigma(), 1);
+        assertFalse(report.isNoisy());
+    }
+
+    @Test
+    public void bandsMatchTheSerialResult() {
+        CompressionExecutor executor = new CompressionExecutor(4, "test");
+        try {
+            LumaPlane plane = plane(SsimTest.scene(WIDTH, HEIGHT, 5));
+            MetricsReport serial = MetricsEngine.standard(null, 1).measure(plane);
+            MetricsReport banded = MetricsEngine.standard(executor, 4).measure(plane);
+
+            assertTrue(Arrays.equals(serial.getExposure().getHistogram(), banded.getExposure().getHistogram()));
+            assertEquals(serial.getExposure().getMean(), banded.getExposure().getMean(), 0);
+            assertEquals(serial.getBlurScore().getScore(), banded.getBlurScore().getScore(), 1e-9);
+            assertEquals(serial.getBlurScore().getMaxResponse(), banded.getBlurScore().getMaxResponse(), 0);
+            assertEquals(serial.getNoiseSigma(), banded.getNoiseSigma(), 0);
+            assertEquals(serial.getContrast(), banded.getContrast(), 1e-12);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void flagsDarkAndBrightPlanes() {
+        MetricsEngine engine = MetricsEngine.standard(null, 1);
+        byte[] scene = SsimTest.scene(WIDTH, HEIGHT, 0);
+
+        MetricsReport normal = engine.measure(plane(scene));
+        assertFalse(normal.getExposure().toString(), normal.isUnderexposed());
+        assertFalse(normal.getExposure().toString(), normal.isOverexposed());
+
+        MetricsReport dark = engine.measure(plane(shift(scene, -110)));
+        assertTrue(dark.getExposure().toString(), dark.isUnderexposed());
+        assertFalse(dark.getExposure().toString(), dark.isOverexposed());
+
+        MetricsReport bright = engine.measure(plane(shift(scene, 110)));
+        assertTrue(bright.getExposure().toString(), bright.isOverexposed());
+        assertFalse(bright.getExposure().toString(), bright.isUnderexposed());
+    }
+
+    @Test
+    public void flagsFlatPlanes() {
+        MetricsEngine engine = MetricsEngine.standard(null, 1);
+        byte[] flat = new byte[WIDTH * HEIGHT];
+        Arrays.fill(flat, (byte) 128);
+        MetricsReport report = engine.measure(plane(flat));
+        assertEquals(0, report.getContrast(), 0);
+        assertTrue(report.isFlat());
+        assertTrue(report.isBlurry());
+        assertFalse(report.isAcceptable());
+
+        assertFalse(engine.measure(plane(SsimTest.scene(WIDTH, HEIGHT, 0))).isFlat());
+    }
+
+    @Test
+    public void scoresSharpAboveSmooth() {
+        MetricsEngine engine = MetricsEngine.standard(null, 1);
+        MetricsReport sharp = engine.measure(plane(SsimTest.scene(WIDTH, HEIGHT, 0)));
+        MetricsReport smooth = engine.measure(plane(smooth(0)));
+        assertFalse(sharp.getBlurScore().toString(), sharp.isBlurry());
+        assertTrue(smooth.getBlurScore().toString(), smooth.isBlurry());
+    }
+
+    /**
+     * A slow diagonal gradient with Gaussian noise of the given deviation, kept away from the clipping levels so
+     * that the noise is not cut off.
+     */
+    private static byte[] smooth(double sigma) {
+        Random random = new Random(24);
+        byte[] luma = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double value = 60 + 100.0 * (x + y) / (WIDTH + HEIGHT) + random.nextGaussian() * sigma;
+                luma[y * WIDTH + x] = (byte) Math.max(0, Math.min(255, Math.round(value)));
+            }
+        }
+        return luma;
+    }
+
+    private static byte[] shift(byte[] luma, int offset) {
+        byte[] shifted = new byte[luma.length];
+        for (int i = 0; i < luma.length; i++) {
+            shifted[i] = (byte) Math.max(0, Math.min(255, (luma[i] & 0xFF) + offset));
+        }
+        return shifted;
+    }
+
+    private static LumaPlane plane(byte[] luma) {
+        return SsimTest.plane(luma, WIDTH, HEIGHT);
+    }
+}
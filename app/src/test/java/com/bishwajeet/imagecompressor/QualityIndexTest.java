@@ -0,0 +1,289 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QualityIndexTest {
+
+    private static final int PAGE = QualityIndex.PAGE_SIZE;
+
+    private FakeMedia media;
+    private FakeStore store;
+    private FakeScorer scorer;
+    private QualityIndex index;
+
+    @Before
+    public void setUp() {
+        media = new FakeMedia();
+        store = new FakeStore();
+        scorer = new FakeScorer();
+        index = new QualityIndex(media, store, scorer, null);
+    }
+
+    @Test
+    public void firstRunScoresEveryImage() {
+        media.addImages(2 * PAGE + 50);
+        final AtomicInteger pages = new AtomicInteger();
+        QualityIndexStats stats = index.update(new QualityIndex.ProgressListener() {
+            @Override
+            public void onProgress(QualityIndexStats stats) {
+                pages.incrementAndGet();
+            }
+        });
+
+        assertEquals(2 * PAGE + 50, stats.getTotalCount());
+        assertEquals(2 * PAGE + 50, stats.getScannedCount());
+        assertEquals(2 * PAGE + 50, stats.getScoredCount());
+        assertEquals(0, stats.getSkippedCount());
+        assertTrue(stats.isFinished());
+        assertEquals(1, stats.getProgress(), 0);
+        assertEquals(3, pages.get());
+        assertEquals(media.images.keySet(), store.rows.keySet());
+    }
+
+    @Test
+    public void secondRunSkipsUnchangedImages() {
+        media.addImages(2 * PAGE + 50);
+        index.update(null);
+        scorer.scored.clear();
+
+        QualityIndexStats stats = index.update(null);
+        assertEquals(0, stats.getScoredCount());
+        assertEquals(2 * PAGE + 50, stats.getSkippedCount());
+        assertEquals(1, stats.getSkipRate(), 0);
+        assertTrue(scorer.scored.isEmpty());
+    }
+
+    @Test
+    public void rescoresChangedAndNewImages() {
+        List<Long> ids = media.addImages(2 * PAGE + 50);
+        index.update(null);
+        scorer.scored.clear();
+
+        long touched = ids.get(5);
+        long resized = ids.get(PAGE + 7);
+        media.images.get(touched)[1] += 60;
+        media.images.get(resized)[0] += 1024;
+        long added = ids.get(ids.size() - 1) + 1;
+        media.images.put(added, new long[]{4096, 1});
+
+        QualityIndexStats stats = index.update(null);
+        assertEquals(3, stats.getScoredCount());
+        assertEquals(2 * PAGE + 48, stats.getSkippedCount());
+        Collections.sort(scorer.scored);
+        assertEquals(Arrays.asList(touched, resized, added), scorer.scored);
+        assertEquals(media.images.get(touched)[1], store.rows.get(touched)[1]);
+        assertEquals(media.images.get(resized)[0], store.rows.get(resized)[0]);
+    }
+
+    @Test
+    public void dropsImagesDeletedAnywhere() {
+        List<Long> ids = media.addImages(2 * PAGE + 50);
+        index.update(null);
+
+        // inside the first page, either side of the first page boundary, and the last images
+        List<Long> deleted = Arrays.asList(ids.get(3), ids.get(PAGE - 1), ids.get(PAGE), ids.get(ids.size() - 2),
+                ids.get(ids.size() - 1));
+        for (Long id : deleted) {
+            media.images.remove(id);
+        }
+
+        QualityIndexStats stats = index.update(null);
+        assertEquals(deleted.size(), stats.getRemovedCount());
+        assertEquals(0, stats.getScoredCount());
+        assertEquals(media.images.keySet(), store.rows.keySet());
+    }
+
+    @Test
+    public void pagesAnExactMultipleOfThePageSize() {
+        List<Long> ids = media.addImages(2 * PAGE);
+        QualityIndexStats stats = index.update(null);
+        assertEquals(2 * PAGE, stats.getScoredCount());
+        assertEquals(media.images.keySet(), store.rows.keySet());
+        // two full pages and the empty one that ends the run
+        assertEquals(3, media.requests.size());
+
+        media.images.remove(ids.get(ids.size() - 1));
+        stats = index.update(null);
+        assertEquals(1, stats.getRemovedCount());
+        assertEquals(media.images.keySet(), store.rows.keySet());
+    }
+
+    @Test
+    public void asksForOnePageAtATime() {
+        List<Long> ids = media.addImages(3 * PAGE + 10);
+        index.update(null);
+
+        assertEquals(4, media.requests.size());
+        long lastId = -1;
+        for (int i = 0; i < media.requests.size(); i++) {
+            long[] request = media.requests.get(i);
+            assertEquals(lastId, request[0]);
+            assertEquals(PAGE, request[1]);
+            lastId = ids.get(Math.min(ids.size(), (i + 1) * PAGE) - 1);
+        }
+    }
+
+    @Test
+    public void emptyMediaStoreClearsTheIndex() {
+        media.addImages(PAGE + 1);
+        index.update(null);
+        media.images.clear();
+
+        QualityIndexStats stats = index.update(null);
+        assertEquals(PAGE + 1, stats.getRemovedCount());
+        assertTrue(store.rows.isEmpty());
+    }
+
+    @Test
+    public void keepsFailedImagesUntilTheyChange() {
+        List<Long> ids = media.addImages(10);
+        long broken = ids.get(4);
+        scorer.failing.add(broken);
+
+        QualityIndexStats stats = index.update(null);
+        assertEquals(9, stats.getScoredCount());
+        assertEquals(1, stats.getFailedCount());
+        assertTrue(store.rows.containsKey(broken));
+        assertNull(index.get(broken));
+        assertNotNull(index.get(ids.get(3)));
+
+        stats = index.update(null);
+        assertEquals(0, stats.getFailedCount());
+        assertEquals(10, stats.getSkippedCount());
+    }
+
+    /**
+     * Media ids with gaps, as left by deleted images, mapped to size and modification time.
+     */
+    private static class FakeMedia implements QualityIndex.MediaSource {
+        final TreeMap<Long, long[]> images = new TreeMap<>();
+        // the last id and the limit of every page query
+        final List<long[]> requests = new ArrayList<>();
+
+        List<Long> addImages(int count) {
+            List<Long> ids = new ArrayList<>();
+            long id = images.isEmpty() ? 1 : images.lastKey() + 1;
+            for (int i = 0; i < count; i++) {
+                id += 1 + i % 3;
+                images.put(id, new long[]{1000 + id, 1500000000L + id});
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        @Override
+        public int count() {
+            return images.size();
+        }
+
+        @Override
+        public List<QualityIndex.MediaItem> queryPage(long lastId, int limit) {
+            requests.add(new long[]{lastId, limit});
+            List<QualityIndex.MediaItem> page = new ArrayList<>();
+            for (Map.Entry<Long, long[]> image : images.tailMap(lastId, false).entrySet()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(new QualityIndex.MediaItem(image.getKey(), "/sdcard/DCIM/" + image.getKey() + ".jpg",
+                        image.getValue()[0], image.getValue()[1]));
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Rows as size, modification time and sharpness, or a null sharpness for images that failed.
+     */
+    private static class FakeStore implements QualityIndex.Store {
+        final TreeMap<Long, long[]> rows = new TreeMap<>();
+        final Map<Long, Double> sharpness = new HashMap<>();
+
+        @Override
+        public Map<Long, long[]> readRange(long lastId, long pageEnd) {
+            Map<Long, long[]> range = new HashMap<>();
+            for (Map.Entry<Long, long[]> row : rows.subMap(lastId, false, pageEnd, true).entrySet()) {
+                range.put(row.getKey(), row.getValue().clone());
+            }
+            return range;
+        }
+
+        @Override
+        public void write(List<QualityIndex.MediaItem> items, Collection<Long> removedIds) {
+            for (QualityIndex.MediaItem item : items) {
+                rows.put(item.id, new long[]{item.size, item.dateModified});
+                sharpness.put(item.id, item.score != null ? item.sharpness : null);
+            }
+            for (Long id : removedIds) {
+                rows.remove(id);
+                sharpness.remove(id);
+            }
+        }
+
+        @Override
+        public List<QualityEntry> blurriest(int limit) {
+            List<QualityEntry> entries = new ArrayList<>();
+            for (Long id : rows.keySet()) {
+                QualityEntry entry = get(id);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+            Collections.sort(entries, new Comparator<QualityEntry>() {
+                @Override
+                public int compare(QualityEntry a, QualityEntry b) {
+                    return Double.compare(a.getSharpness(), b.getSharpness());
+                }
+            });
+            return entries.subList(0, Math.min(limit, entries.size()));
+        }
+
+        @Override
+        public QualityEntry get(long mediaId) {
+            Double value = sharpness.get(mediaId);
+            if (value == null) {
+                return null;
+            }
+            long[] row = rows.get(mediaId);
+            return new QualityEntry(mediaId, "content://media/external/images/media/" + mediaId, row[0], row[1],
+                    value, value, 1, value < 1, true);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Scores every image by its id, except the ones set to fail.
+     */
+    private static class FakeScorer implements QualityIndex.Scorer {
+        final List<Long> scored = new ArrayList<>();
+        final List<Long> failing = new ArrayList<>();
+
+        @Override
+        public void score(QualityIndex.MediaItem item) {
+            scored.add(item.id);
+            if (!failing.contains(item.id)) {
+                double score = (item.id * 37 % 101) / 1000.0;
+                item.setScore(new BlurScore(score, 0, 1, score < 0.05), 0.05, true);
+            }
+        }
+    }
+}
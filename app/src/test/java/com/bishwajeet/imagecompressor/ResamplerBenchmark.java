@@ -0,0 +1,111 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Locale;
+
+/**
+ * Microbenchmark of {@link Resampler} against the bilinear draw of the canvas path. The canvas path is stood in for
+ * by a Java2D bilinear draw, the same filter Skia applies for {@code Paint.FILTER_BITMAP_FLAG}. Run it by hand,
+ * e.g. by removing {@link Ignore}, on an idle machine; it prints the best of several rounds and asserts nothing,
+ * since timings on shared CI machines are noise.
+ */
+@Ignore("Benchmark, run by hand")
+public class ResamplerBenchmark {
+
+    // a 12 MP decode sub-sampled by 2, as the resampler path decodes it, and the full decode, to the default output
+    private static final int[][] SIZES = {{2000, 1500, 1795, 1346}, {4000, 3000, 1795, 1346}};
+
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void resampleAgainstBilinearDraw() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        CompressionExecutor executor = new CompressionExecutor(parallelism, "benchmark");
+        try {
+            for (int[] size : SIZES) {
+                final int srcWidth = size[0];
+                final int srcHeight = size[1];
+                final int dstWidth = size[2];
+                final int dstHeight = size[3];
+                final int[] src = pixels(srcWidth, srcHeight);
+                final int[] dst = new int[dstWidth * dstHeight];
+
+                final BufferedImage source = new BufferedImage(srcWidth, srcHeight, BufferedImage.TYPE_INT_ARGB);
+                System.arraycopy(src, 0, ((DataBufferInt) source.getRaster().getDataBuffer()).getData(), 0,
+                        src.length);
+                final BufferedImage target = new BufferedImage(dstWidth, dstHeight, BufferedImage.TYPE_INT_ARGB);
+                report(size, "canvas bilinear", time(new Runnable() {
+                    @Override
+                    public void run() {
+                        Graphics2D graphics = target.createGraphics();
+                        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                        graphics.drawImage(source, 0, 0, dstWidth, dstHeight, null);
+                        graphics.dispose();
+                    }
+                }));
+
+                for (Resampler.Filter filter : Resampler.Filter.values()) {
+                    final Resampler serial = new Resampler(filter);
+                    report(size, filter + " serial", time(new Runnable() {
+                        @Override
+                        public void run() {
+                            serial.resize(src, srcWidth, srcHeight, dst, dstWidth, dstHeight);
+                        }
+                    }));
+                    final Resampler banded = new Resampler(filter, executor, parallelism);
+                    report(size, filter + " banded x" + parallelism, time(new Runnable() {
+                        @Override
+                        public void run() {
+                            banded.resize(src, srcWidth, srcHeight, dst, dstWidth, dstHeight);
+                        }
+                    }));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long time(Runnable task) {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            task.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void report(int[] size, String label, long nanos) {
+        System.out.println(String.format(Locale.US, "%dx%d to %dx%d, %s: %.1f ms", size[0], size[1], size[2],
+                size[3], label, nanos / 1e6));
+    }
+
+    /**
+     * Opaque gradients under a fine checkerboard, so that neither pass sees flat input.
+     */
+    private static int[] pixels(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int check = (x / 3 + y / 3) % 2 == 0 ? 0 : 64;
+                int r = Math.min(255, 191 * x / width + check);
+                int g = Math.min(255, 191 * y / height + check);
+                int b = Math.min(255, 191 * (x + y) / (width + height) + check);
+                pixels[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return pixels;
+    }
+}
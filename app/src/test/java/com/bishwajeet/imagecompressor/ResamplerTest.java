@@ -0,0 +1,198 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResamplerTest {
+
+    // reductions by an integer and a fractional factor, and an enlargement
+    private static final int[][] SIZES = {{640, 480, 320, 240}, {640, 480, 173, 131}, {100, 75, 257, 190}};
+
+    // the fixed-point weights cost at most a step of rounding per pass; 50 dB is far below visible loss
+    private static final double MIN_PSNR = 50;
+
+    @Test
+    public void flatFieldsComeThroughExactly() {
+        int[] colors = {0xFF000000, 0xFFFFFFFF, 0xFF7F3A11, 0x80C0FFEE, 0x00000000};
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            Resampler resampler = new Resampler(filter);
+            for (int[] size : SIZES) {
+                for (int color : colors) {
+                    int[] src = new int[size[0] * size[1]];
+                    Arrays.fill(src, color);
+                    int[] dst = new int[size[2] * size[3]];
+                    resampler.resize(src, size[0], size[1], dst, size[2], size[3]);
+                    for (int pixel : dst) {
+                        assertEquals(filter + " " + Integer.toHexString(color), color, pixel);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void gradientsMatchTheReference() {
+        for (int[] size : SIZES) {
+            int[] src = gradient(size[0], size[1]);
+            assertPsnr(src, size);
+        }
+    }
+
+    @Test
+    public void checkerboardsMatchTheReference() {
+        for (int[] size : SIZES) {
+            int[] src = checkerboard(size[0], size[1], 7);
+            assertPsnr(src, size);
+        }
+    }
+
+    @Test
+    public void bandsMatchTheSerialResult() {
+        CompressionExecutor executor = new CompressionExecutor(4, "test");
+        try {
+            for (Resampler.Filter filter : Resampler.Filter.values()) {
+                int[] src = checkerboard(640, 480, 5);
+                int[] serial = new int[173 * 131];
+                int[] banded = new int[173 * 131];
+                new Resampler(filter).resize(src, 640, 480, serial, 173, 131);
+                new Resampler(filter, executor, 4).resize(src, 640, 480, banded, 173, 131);
+                assertTrue(filter.toString(), Arrays.equals(serial, banded));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertPsnr(int[] src, int[] size) {
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            if (filter == Resampler.Filter.AREA && size[2] > size[0]) {
+                // enlarging by area is nearest neighbour, which the reference does not model
+                continue;
+            }
+            int[] dst = new int[size[2] * size[3]];
+            new Resampler(filter).resize(src, size[0], size[1], dst, size[2], size[3]);
+            double[][] reference = reference(filter, src, size[0], size[1], size[2], size[3]);
+            double psnr = psnr(dst, reference);
+            String label = filter + " " + size[0] + "x" + size[1] + " to " + size[2] + "x" + size[3];
+            assertTrue(label + ": " + psnr + " dB", psnr >= MIN_PSNR);
+        }
+    }
+
+    /**
+     * Double-precision resampling over the whole source, with the filter truncated and renormalized at the
+     * borders. Like any resampler with an 8-bit intermediate plane, Pillow's included, the horizontal pass is
+     * rounded and clamped before the vertical one, which clips Lanczos overshoot on hard edges. Returns unclamped
+     * channel values, alpha first.
+     */
+    private static double[][] reference(Resampler.Filter filter, int[] src, int srcWidth, int srcHeight,
+                                        int dstWidth, int dstHeight) {
+        double[][] horizontal = weights(filter, srcWidth, dstWidth);
+        double[][] vertical = weights(filter, srcHeight, dstHeight);
+        double[][] rows = new double[4][dstWidth * srcHeight];
+        for (int y = 0; y < srcHeight; y++) {
+            for (int x = 0; x < dstWidth; x++) {
+                for (int c = 0; c < 4; c++) {
+                    double sum = 0;
+                    for (int sx = 0; sx < srcWidth; sx++) {
+                        sum += ((src[y * srcWidth + sx] >>> (24 - 8 * c)) & 0xFF) * horizontal[x][sx];
+                    }
+                    rows[c][y * dstWidth + x] = Math.max(0, Math.min(255, Math.round(sum)));
+                }
+            }
+        }
+        double[][] out = new double[4][dstWidth * dstHeight];
+        for (int y = 0; y < dstHeight; y++) {
+            for (int x = 0; x < dstWidth; x++) {
+                for (int c = 0; c < 4; c++) {
+                    double sum = 0;
+                    for (int sy = 0; sy < srcHeight; sy++) {
+                        sum += rows[c][sy * dstWidth + x] * vertical[y][sy];
+                    }
+                    out[c][y * dstWidth + x] = sum;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static double[][] weights(Resampler.Filter filter, int srcSize, int dstSize) {
+        double scale = srcSize / (double) dstSize;
+        double filterScale = Math.max(1, scale);
+        double[][] weights = new double[dstSize][srcSize];
+        for (int i = 0; i < dstSize; i++) {
+            double total = 0;
+            for (int j = 0; j < srcSize; j++) {
+                double weight;
+                if (filter == Resampler.Filter.AREA) {
+                    // overlap of source pixel j with the output pixel's footprint
+                    weight = Math.max(0, Math.min(j + 1, (i + 1) * scale) - Math.max(j, i * scale));
+                } else {
+                    weight = lanczos3((j + 0.5 - (i + 0.5) * scale) / filterScale);
+                }
+                weights[i][j] = weight;
+                total += weight;
+            }
+            for (int j = 0; j < srcSize; j++) {
+                weights[i][j] /= total;
+            }
+        }
+        return weights;
+    }
+
+    private static double lanczos3(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        if (Math.abs(x) >= 3) {
+            return 0;
+        }
+        double px = Math.PI * x;
+        return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+    }
+
+    private static double psnr(int[] actual, double[][] reference) {
+        double squared = 0;
+        for (int i = 0; i < actual.length; i++) {
+            for (int c = 0; c < 4; c++) {
+                double expected = Math.max(0, Math.min(255, reference[c][i]));
+                double error = ((actual[i] >>> (24 - 8 * c)) & 0xFF) - expected;
+                squared += error * error;
+            }
+        }
+        double mse = squared / (actual.length * 4.0);
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / mse);
+    }
+
+    /**
+     * Opaque, with red rising left to right, green top to bottom and blue along the diagonal.
+     */
+    private static int[] gradient(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = 255 * x / (width - 1);
+                int g = 255 * y / (height - 1);
+                int b = 255 * (x + y) / (width + height - 2);
+                pixels[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Opaque black and white cells of the given size, the worst case for ringing and aliasing.
+     */
+    private static int[] checkerboard(int width, int height, int cell) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = ((x / cell + y / cell) % 2 == 0) ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        return pixels;
+    }
+}
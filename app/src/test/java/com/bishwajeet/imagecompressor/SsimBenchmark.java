@@ -0,0 +1,90 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import static com.bishwajeet.imagecompressor.SsimTest.PROXY_HEIGHT;
+import static com.bishwajeet.imagecompressor.SsimTest.PROXY_WIDTH;
+import static com.bishwajeet.imagecompressor.SsimTest.plane;
+import static com.bishwajeet.imagecompressor.SsimTest.scene;
+
+/**
+ * Microbenchmark of one similarity probe against the encode it judges. The encode is the JDK's JPEG writer, which
+ * like the platform encoder is native libjpeg. Run it by hand, e.g. by removing {@link Ignore}, on an idle machine;
+ * it prints the best of several rounds and asserts nothing, since timings on shared CI machines are noise.
+ */
+@Ignore("Benchmark, run by hand")
+public class SsimBenchmark {
+
+    // the default output compressToSimilarity encodes at every probe
+    private static final int OUTPUT_WIDTH = 1795;
+    private static final int OUTPUT_HEIGHT = 1287;
+
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void probeAgainstEncode() throws IOException {
+        LumaPlane first = plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 0), PROXY_WIDTH, PROXY_HEIGHT);
+        LumaPlane second = plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 8), PROXY_WIDTH, PROXY_HEIGHT);
+        BufferedImage output = image(scene(OUTPUT_WIDTH, OUTPUT_HEIGHT, 4), OUTPUT_WIDTH, OUTPUT_HEIGHT);
+        Ssim ssim = new Ssim();
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            ssim.compute(first, second);
+            encode(output);
+        }
+        long ssimNanos = Long.MAX_VALUE;
+        long encodeNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            ssim.compute(first, second);
+            ssimNanos = Math.min(ssimNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            encode(output);
+            encodeNanos = Math.min(encodeNanos, System.nanoTime() - start);
+        }
+        System.out.println(String.format(Locale.US, "SSIM %dx%d: %.2f ms, JPEG %dx%d: %.2f ms", PROXY_WIDTH,
+                PROXY_HEIGHT, ssimNanos / 1e6, OUTPUT_WIDTH, OUTPUT_HEIGHT, encodeNanos / 1e6));
+    }
+
+    private static BufferedImage image(byte[] luma, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = luma[y * width + x] & 0xFF;
+                image.setRGB(x, y, value << 16 | (255 - value) << 8 | value / 2);
+            }
+        }
+        return image;
+    }
+
+    private static int encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(bytes);
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.8f);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            out.close();
+            writer.dispose();
+        }
+        return bytes.size();
+    }
+}
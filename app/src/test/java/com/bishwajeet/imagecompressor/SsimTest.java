@@ -0,0 +1,97 @@
+package com.bishwajeet.imagecompressor;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class SsimTest {
+
+    // the proxy compressToSimilarity compares
+    static final int PROXY_WIDTH = 448;
+    static final int PROXY_HEIGHT = 321;
+
+    @Test
+    public void identicalPlanesScoreOne() {
+        LumaPlane plane = plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 0), PROXY_WIDTH, PROXY_HEIGHT);
+        assertEquals(1, new Ssim().compute(plane, plane), 1e-9);
+    }
+
+    @Test
+    public void noiseLowersTheScore() {
+        LumaPlane reference = plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 0), PROXY_WIDTH, PROXY_HEIGHT);
+        Ssim ssim = new Ssim();
+        double slightly = ssim.compute(reference, plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 4), PROXY_WIDTH,
+                PROXY_HEIGHT));
+        double heavily = ssim.compute(reference, plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 32), PROXY_WIDTH,
+                PROXY_HEIGHT));
+        assertTrue(slightly + " " + heavily, slightly < 1 && heavily < slightly);
+    }
+
+    @Test
+    public void computeDoesNotAllocateOnceWarm() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        // per-thread allocation counters are a HotSpot extension
+        assumeTrue(isAllocationCounter(threads));
+        LumaPlane first = plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 0), PROXY_WIDTH, PROXY_HEIGHT);
+        LumaPlane second = plane(scene(PROXY_WIDTH, PROXY_HEIGHT, 8), PROXY_WIDTH, PROXY_HEIGHT);
+        Ssim ssim = new Ssim();
+        for (int i = 0; i < 20; i++) {
+            ssim.compute(first, second);
+        }
+
+        long thread = Thread.currentThread().getId();
+        int calls = 100;
+        long before = allocatedBytes(threads, thread);
+        for (int i = 0; i < calls; i++) {
+            ssim.compute(first, second);
+        }
+        long allocated = allocatedBytes(threads, thread) - before;
+        // leaves room for the bookkeeping of the measurement itself, far below one table
+        assertTrue(allocated + " bytes", allocated < calls * 16L);
+    }
+
+    private static boolean isAllocationCounter(ThreadMXBean threads) {
+        try {
+            Class<?> extension = Class.forName("com.sun.management.ThreadMXBean");
+            return extension.isInstance(threads)
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads, long thread) {
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(thread);
+    }
+
+    /**
+     * Gradients, edges and fine texture, with Gaussian noise of the given deviation.
+     */
+    static byte[] scene(int width, int height, double noise) {
+        Random random = new Random(width * 31 + height);
+        Random grain = new Random((long) noise);
+        byte[] luma = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double value = 40 + 120.0 * x / width + ((x / 24 + y / 24) % 2 == 0 ? 50 : 0)
+                        + 20 * Math.sin(x * 0.7) * Math.sin(y * 0.5) + random.nextGaussian() * 3
+                        + grain.nextGaussian() * noise;
+                luma[y * width + x] = (byte) Math.max(0, Math.min(255, Math.round(value)));
+            }
+        }
+        return luma;
+    }
+
+    static LumaPlane plane(byte[] luma, int width, int height) {
+        LumaPlane plane = new LumaPlane();
+        plane.set(luma, width, height);
+        return plane;
+    }
+}